@@ -0,0 +1,11 @@
+package com.photo.common;
+
+/**
+ * 同步批量接口的输入超过条数上限（应改用批量任务接口）
+ */
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -34,32 +34,28 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .addPathPatterns("/**")
                 .order(1);
 
-        // 认证拦截器 - 拦截除登录、注册外的所有请求
+        // 认证拦截器 - 拦截除登录、注册、图片访问外的所有请求
+        // 图片与 nginx 直接提供时一致，不需要登录（<img> 请求不带 token，文件名不可猜测）
         registry.addInterceptor(authInterceptor)
                 .addPathPatterns("/**")
                 .excludePathPatterns(
                         "/auth/login",
-                        "/auth/register"
+                        "/auth/register",
+                        "/uploads/**",
+                        "/templates/**"
                 )
                 .order(2);
     }
 
     /**
      * 配置静态资源映射
+     * 生成图片（/uploads）和模板图片（/templates）由 ImageFileController 提供，带长期缓存与 ETag
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 上传文件访问路径
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:./uploads/");
-        
         // 导出文件访问路径
         registry.addResourceHandler("/exports/**")
                 .addResourceLocations("file:./exports/");
-        
-        // 模板文件访问路径
-        registry.addResourceHandler("/templates/**")
-                .addResourceLocations("file:./templates/");
     }
 
     /**
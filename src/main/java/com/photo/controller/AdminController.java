@@ -6,18 +6,35 @@ import com.photo.common.Result;
 import com.photo.entity.PhotoTemplate;
 import com.photo.entity.UsageRecord;
 import com.photo.entity.User;
+import com.photo.job.ImageRetentionSweeper;
+import com.photo.job.UsageRecordWriter;
 import com.photo.mapper.UsageRecordMapper;
+import com.photo.render.FontRegistry;
+import com.photo.render.ImageChecksums;
+import com.photo.render.ImageDeduplicator;
+import com.photo.render.ImageEncoder;
+import com.photo.render.PhotoRenderer;
+import com.photo.render.RenderExecutor;
+import com.photo.render.RenderPlanCache;
+import com.photo.render.TemplateImageCache;
 import com.photo.service.PhotoService;
+import com.photo.service.UsageStatService;
 import com.photo.service.UserService;
+import com.photo.session.SessionStore;
+import com.photo.store.ImageStore;
+import com.photo.util.ErrorResponseWriter;
+import com.photo.util.PageCursor;
 import com.photo.util.UserContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +55,48 @@ public class AdminController {
     @Autowired
     private UsageRecordMapper usageRecordMapper;
 
+    @Autowired
+    private UsageStatService usageStatService;
+
+    @Autowired
+    private TemplateImageCache templateImageCache;
+
+    @Autowired
+    private RenderPlanCache renderPlanCache;
+
+    @Autowired
+    private FontRegistry fontRegistry;
+
+    @Autowired
+    private RenderExecutor renderExecutor;
+
+    @Autowired
+    private ImageEncoder imageEncoder;
+
+    @Autowired
+    private PhotoRenderer photoRenderer;
+
+    @Autowired
+    private ImageDeduplicator imageDeduplicator;
+
+    @Autowired
+    private ImageChecksums imageChecksums;
+
+    @Autowired
+    private UsageRecordWriter usageRecordWriter;
+
+    @Autowired
+    private ImageRetentionSweeper imageRetentionSweeper;
+
+    @Autowired
+    private SessionStore sessionStore;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ErrorResponseWriter errorResponseWriter;
+
     /**
      * 获取所有用户列表
      */
@@ -68,7 +127,8 @@ public class AdminController {
     @GetMapping("/usage-records")
     public Result<Page<UsageRecord>> getUsageRecords(@RequestParam(defaultValue = "1") Integer page,
                                                      @RequestParam(defaultValue = "10") Integer size,
-                                                     @RequestParam(required = false) String userId) {
+                                                     @RequestParam(required = false) String userId,
+                                                     @RequestParam(defaultValue = "false") Boolean full) {
         try {
             // 检查是否是管理员
             User currentUser = UserContext.getUser();
@@ -86,12 +146,78 @@ public class AdminController {
             wrapper.orderByDesc(UsageRecord::getCreateTime);
             
             Page<UsageRecord> result = usageRecordMapper.selectPage(recordPage, wrapper);
+            if (full) {
+                // 还原批量记录的完整文字和图片路径
+                photoService.expandRecords(result.getRecords());
+            }
             return Result.success(result);
         } catch (Exception e) {
             return Result.error(e.getMessage());
         }
     }
 
+    /**
+     * 获取使用明细（游标分页，按创建时间倒序）
+     * cursor 为上一页返回的 nextCursor，首页不传；withTotal 为 true 时附带近似总数
+     */
+    @GetMapping("/usage-records/scroll")
+    public Result<Map<String, Object>> scrollUsageRecords(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "10") Integer size,
+                                                          @RequestParam(required = false) String userId,
+                                                          @RequestParam(defaultValue = "false") Boolean withTotal,
+                                                          @RequestParam(defaultValue = "false") Boolean full) {
+        try {
+            // 检查是否是管理员
+            User currentUser = UserContext.getUser();
+            if (currentUser == null || currentUser.getRole() != 1) {
+                return Result.error("无权限访问");
+            }
+
+            int limit = PageCursor.clampSize(size);
+            String[] keys = PageCursor.decode(cursor, 2);
+
+            LambdaQueryWrapper<UsageRecord> wrapper = new LambdaQueryWrapper<>();
+            if (userId != null) {
+                wrapper.eq(UsageRecord::getUserId, userId);
+            }
+            if (keys != null) {
+                // 从上一页最后一条之后继续：(创建时间, ID) 严格小于游标
+                LocalDateTime createTime = LocalDateTime.parse(keys[0]);
+                Long id = Long.valueOf(keys[1]);
+                wrapper.and(w -> w.lt(UsageRecord::getCreateTime, createTime)
+                        .or(o -> o.eq(UsageRecord::getCreateTime, createTime).lt(UsageRecord::getId, id)));
+            }
+            wrapper.orderByDesc(UsageRecord::getCreateTime)
+                    .orderByDesc(UsageRecord::getId)
+                    .last("LIMIT " + (limit + 1));
+            List<UsageRecord> records = usageRecordMapper.selectList(wrapper);
+
+            boolean hasMore = records.size() > limit;
+            if (hasMore) {
+                records = records.subList(0, limit);
+            }
+            if (full) {
+                photoService.expandRecords(records);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("records", records);
+            response.put("hasMore", hasMore);
+            if (hasMore) {
+                UsageRecord last = records.get(limit - 1);
+                response.put("nextCursor", PageCursor.encode(last.getCreateTime(), last.getId()));
+            } else {
+                response.put("nextCursor", null);
+            }
+            if (withTotal) {
+                response.put("total", usageStatService.countRecords(userId));
+            }
+
+            return Result.success(response);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
     /**
      * 获取统计信息
      */
@@ -110,19 +236,8 @@ public class AdminController {
             long userCount = userService.count();
             statistics.put("userCount", userCount);
             
-            // 总生成次数
-            LambdaQueryWrapper<UsageRecord> wrapper = new LambdaQueryWrapper<>();
-            wrapper.select(UsageRecord::getCount);
-            List<UsageRecord> records = usageRecordMapper.selectList(wrapper);
-            int totalCount = records.stream().mapToInt(UsageRecord::getCount).sum();
-            statistics.put("totalCount", totalCount);
-            
-            // 今日生成次数
-            LambdaQueryWrapper<UsageRecord> todayWrapper = new LambdaQueryWrapper<>();
-            todayWrapper.apply("DATE(create_time) = CURDATE()");
-            List<UsageRecord> todayRecords = usageRecordMapper.selectList(todayWrapper);
-            int todayCount = todayRecords.stream().mapToInt(UsageRecord::getCount).sum();
-            statistics.put("todayCount", todayCount);
+            // 总生成次数、今日生成次数（来自日汇总表）
+            statistics.putAll(usageStatService.getOverallStats());
             
             return Result.success(statistics);
         } catch (Exception e) {
@@ -130,6 +245,74 @@ public class AdminController {
         }
     }
 
+    /**
+     * 获取模板使用排行（最近 days 天）
+     */
+    @GetMapping("/template-ranking")
+    public Result<List<Map<String, Object>>> getTemplateRanking(@RequestParam(defaultValue = "30") Integer days,
+                                                                @RequestParam(defaultValue = "20") Integer limit) {
+        try {
+            // 检查是否是管理员
+            User currentUser = UserContext.getUser();
+            if (currentUser == null || currentUser.getRole() != 1) {
+                return Result.error("无权限访问");
+            }
+
+            return Result.success(usageStatService.getTemplateRanking(days, limit));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 根据使用记录重建日汇总（首次上线或数据修复时调用）
+     */
+    @PostMapping("/usage-stats/rebuild")
+    public Result<Integer> rebuildUsageStats() {
+        try {
+            // 检查是否是管理员
+            User currentUser = UserContext.getUser();
+            if (currentUser == null || currentUser.getRole() != 1) {
+                return Result.error("无权限访问");
+            }
+
+            return Result.success("重建完成", usageStatService.rebuild());
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 获取运行指标（缓存命中率等，用于容量评估）
+     */
+    @GetMapping("/metrics")
+    public Result<Map<String, Object>> getMetrics() {
+        try {
+            // 检查是否是管理员
+            User currentUser = UserContext.getUser();
+            if (currentUser == null || currentUser.getRole() != 1) {
+                return Result.error("无权限访问");
+            }
+
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("templateImageCache", templateImageCache.getStats());
+            metrics.put("renderPlanCache", renderPlanCache.getStats());
+            metrics.put("fonts", fontRegistry.getStats());
+            metrics.put("renderExecutor", renderExecutor.getStats());
+            metrics.put("imageEncoder", imageEncoder.getStats());
+            metrics.put("photoRenderer", photoRenderer.getStats());
+            metrics.put("imageDeduplicator", imageDeduplicator.getStats());
+            metrics.put("imageChecksums", imageChecksums.getStats());
+            metrics.put("imageStore", imageStore.getStats());
+            metrics.put("imageRetention", imageRetentionSweeper.getStats());
+            metrics.put("usageRecordWriter", usageRecordWriter.getStats());
+            metrics.put("sessions", sessionStore.getStats());
+            return Result.success(metrics);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
     /**
      * 上传模板图片
      */
@@ -172,6 +355,35 @@ public class AdminController {
         }
     }
 
+    /**
+     * 模板预览（低分辨率 PNG，直接返回图片，不保存文件、不记录使用明细）
+     * 请求体与保存模板相同，可以是尚未保存的配置
+     */
+    @PostMapping("/template/preview")
+    public void previewTemplate(@RequestBody PhotoTemplate template,
+                                @RequestParam(value = "text", defaultValue = "") String text,
+                                @RequestParam(value = "maxSize", required = false) Integer maxSize,
+                                HttpServletResponse response) throws IOException {
+        // 检查是否是管理员
+        User currentUser = UserContext.getUser();
+        if (currentUser == null || currentUser.getRole() != 1) {
+            errorResponseWriter.write(response, 403, "无权限访问");
+            return;
+        }
+
+        byte[] image;
+        try {
+            image = photoService.renderPreview(template, text, maxSize);
+        } catch (RuntimeException e) {
+            errorResponseWriter.write(response, 500, e.getMessage());
+            return;
+        }
+        response.setContentType("image/png");
+        response.setHeader("Cache-Control", "no-store");
+        response.setContentLength(image.length);
+        response.getOutputStream().write(image);
+    }
+
     /**
      * 获取所有模板
      */
@@ -215,7 +427,7 @@ public class AdminController {
                 return Result.error("删除模板图片失败: " + e.getMessage());
             }
 
-            boolean success = photoService.removeById(id);
+            boolean success = photoService.deleteTemplate(id);
             if (success) {
                 return Result.success("删除成功");
             } else {
@@ -3,11 +3,11 @@ package com.photo.controller;
 import com.photo.common.Result;
 import com.photo.entity.User;
 import com.photo.service.UserService;
-import com.photo.util.SessionManager;
+import com.photo.util.UserContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,7 +25,7 @@ public class AuthController {
      * 用户注册
      */
     @PostMapping("/register")
-    public Result<String> register(@RequestBody Map<String, String> params, HttpSession session) {
+    public Result<String> register(@RequestBody Map<String, String> params) {
         try {
             String username = params.get("username");
             String password = params.get("password");
@@ -76,7 +76,7 @@ public class AuthController {
      * 用户登录
      */
     @PostMapping("/login")
-    public Result<Map<String, Object>> login(@RequestBody Map<String, String> params, HttpSession session) {
+    public Result<Map<String, Object>> login(@RequestBody Map<String, String> params, HttpServletRequest request) {
         try {
             String username = params.get("username");
             String password = params.get("password");
@@ -88,8 +88,8 @@ public class AuthController {
                 return Result.error("密码不能为空");
             }
 
-            String token = userService.login(username, password, session);
-            User user = (User) session.getAttribute("user");
+            User user = userService.authenticate(username, password);
+            String token = userService.login(user, request);
 
             Map<String, Object> data = new HashMap<>();
             data.put("token", token);
@@ -106,10 +106,11 @@ public class AuthController {
      * 用户登出
      */
     @PostMapping("/logout")
-    public Result<String> logout(@RequestHeader("Authorization") String authorization, HttpSession session) {
+    public Result<String> logout(@RequestHeader("Authorization") String authorization, HttpServletRequest request) {
         try {
             String token = authorization.substring(7);
-            userService.logout(token, session);
+            // 不为登出请求新建 Session
+            userService.logout(token, request.getSession(false));
             return Result.success("退出成功");
         } catch (Exception e) {
             return Result.error(e.getMessage());
@@ -120,9 +121,9 @@ public class AuthController {
      * 获取当前用户信息
      */
     @GetMapping("/info")
-    public Result<User> getUserInfo(HttpSession session) {
+    public Result<User> getUserInfo() {
         try {
-            User user = (User) session.getAttribute("user");
+            User user = UserContext.getUser();
             if (user == null) {
                 return Result.error("用户未登录");
             }
@@ -136,9 +137,10 @@ public class AuthController {
      * 修改密码
      */
     @PostMapping("/change-password")
-    public Result<String> changePassword(@RequestBody Map<String, String> params, HttpSession session) {
+    public Result<String> changePassword(@RequestHeader("Authorization") String authorization,
+                                         @RequestBody Map<String, String> params, HttpServletRequest request) {
         try {
-            User user = (User) session.getAttribute("user");
+            User user = UserContext.getUser();
             if (user == null) {
                 return Result.error("用户未登录");
             }
@@ -174,11 +176,8 @@ public class AuthController {
 
             boolean success = userService.changePassword(user.getId(), oldPassword, newPassword);
             if (success) {
-                // 修改密码后清理会话与映射
-                session.removeAttribute("token");
-                session.removeAttribute("user");
-                SessionManager.removeMappings(session);
-                session.invalidate();
+                // 修改密码后作废 token 并清理会话
+                userService.logout(authorization.substring(7), request.getSession(false));
                 return Result.success("密码修改成功");
             } else {
                 return Result.error("旧密码错误");
@@ -0,0 +1,57 @@
+package com.photo.controller;
+
+import com.photo.store.ImageRegion;
+import com.photo.store.ImageStore;
+import com.photo.util.ImageFileSender;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 图片文件访问控制器（生成图片、模板图片）
+ * 长期缓存、ETag、Range 与零拷贝发送见 {@link ImageFileSender}；生成图片从 {@link ImageStore} 读取
+ */
+@RestController
+public class ImageFileController {
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Value("${file.template-path}")
+    private String templatePath;
+
+    /**
+     * 生成的图片
+     */
+    @GetMapping("/uploads/{fileName:.+}")
+    public void getUpload(@PathVariable String fileName, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        ImageRegion region = imageStore.find(fileName);
+        if (region == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ImageFileSender.send(region.getFile(), region.getOffset(), region.getLength(), fileName, request, response);
+    }
+
+    /**
+     * 模板图片
+     */
+    @GetMapping("/templates/{fileName:.+}")
+    public void getTemplate(@PathVariable String fileName, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        File file = ImageFileSender.isSafeName(fileName) ? new File(templatePath, fileName) : null;
+        if (file == null || !file.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ImageFileSender.send(file, request, response);
+    }
+}
@@ -2,16 +2,18 @@ package com.photo.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.photo.common.BatchTooLargeException;
 import com.photo.common.Result;
 import com.photo.entity.PhotoTemplate;
 import com.photo.entity.UsageRecord;
+import com.photo.job.BatchJob;
 import com.photo.mapper.UsageRecordMapper;
+import com.photo.service.BatchJobService;
 import com.photo.service.PhotoService;
+import com.photo.service.UsageStatService;
+import com.photo.util.ErrorResponseWriter;
+import com.photo.util.PageCursor;
 import com.photo.util.UserContext;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -40,6 +42,15 @@ public class PhotoController {
     @Autowired
     private UsageRecordMapper usageRecordMapper;
 
+    @Autowired
+    private BatchJobService batchJobService;
+
+    @Autowired
+    private UsageStatService usageStatService;
+
+    @Autowired
+    private ErrorResponseWriter errorResponseWriter;
+
     /**
      * 获取启用的模板列表
      */
@@ -65,7 +76,9 @@ public class PhotoController {
                                                 @RequestParam(value = "textHeight", defaultValue = "0") Double textHeight,
                                                 @RequestParam(value = "coverColor", defaultValue = "#ffffff") String coverColor,
                                                 @RequestParam(value = "fontSize", defaultValue = "37") Integer fontSize,
-                                                @RequestParam(value = "fontColor", defaultValue = "#000000") String fontColor) {
+                                                @RequestParam(value = "fontColor", defaultValue = "#000000") String fontColor,
+                                                @RequestParam(value = "outputFormat", required = false) String outputFormat,
+                                                @RequestParam(value = "outputQuality", required = false) Integer outputQuality) {
         try {
             String userId = UserContext.getUserId();
             
@@ -79,6 +92,8 @@ public class PhotoController {
             template.setCoverColor(coverColor);
             template.setFontSize(fontSize);
             template.setFontColor(fontColor);
+            template.setOutputFormat(outputFormat);
+            template.setOutputQuality(outputQuality);
             template.setStatus(1); // 默认启用
 
             PhotoTemplate createdTemplate = photoService.createTemplate(template, file);
@@ -108,6 +123,48 @@ public class PhotoController {
         }
     }
 
+    /**
+     * 单次生成图片并直接返回图片内容（不落盘，省去再次请求 /uploads）
+     * persist 为 true 时写响应前先保存，保存成功时路径见响应头 X-Image-Path
+     */
+    @PostMapping("/generate/image")
+    public void generatePhotoImage(@RequestBody Map<String, Object> params, HttpServletResponse response) throws IOException {
+        Object text = params.get("text");
+        Long templateId = parseTemplateId(params.get("templateId"));
+        boolean persist = Boolean.TRUE.equals(params.get("persist"));
+
+        if (!(text instanceof String) || ((String) text).trim().isEmpty()) {
+            errorResponseWriter.write(response, 400, "文字内容不能为空");
+            return;
+        }
+        if (templateId == null) {
+            errorResponseWriter.write(response, 400, "模板ID无效");
+            return;
+        }
+        try {
+            photoService.generatePhotoToResponse((String) text, templateId, persist, response);
+        } catch (RuntimeException e) {
+            // 图片已开始写出时只能中断连接
+            if (!errorResponseWriter.write(response, 500, e.getMessage())) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 解析请求体中的模板ID，缺失或不是整数时返回 null
+     */
+    private static Long parseTemplateId(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * 批量生成图片
      */
@@ -122,8 +179,68 @@ public class PhotoController {
                 return Result.error("文字列表不能为空");
             }
 
-            List<String> imagePaths = photoService.batchGeneratePhotos(textList, templateId);
+            // 同步接口只处理小批量，超出上限时返回 413，由客户端改用批量任务接口
+            List<String> imagePaths = batchJobService.generateSync(textList, templateId);
             return Result.success("批量生成成功", imagePaths);
+        } catch (BatchTooLargeException e) {
+            return Result.error(413, e.getMessage());
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 提交批量生成任务（异步，立即返回任务ID）
+     */
+    @PostMapping("/batch-jobs")
+    public Result<Map<String, Object>> submitBatchJob(@RequestBody Map<String, Object> params) {
+        try {
+            @SuppressWarnings("unchecked")
+            List<String> textList = (List<String>) params.get("textList");
+            Long templateId = Long.valueOf(params.get("templateId").toString());
+
+            if (textList == null || textList.isEmpty()) {
+                return Result.error("文字列表不能为空");
+            }
+
+            BatchJob job = batchJobService.submit(textList, templateId);
+            Map<String, Object> data = new HashMap<>();
+            data.put("jobId", job.getId());
+            return Result.success("任务已提交", data);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 上传Excel提交批量生成任务（异步，立即返回任务ID）
+     */
+    @PostMapping("/batch-jobs/excel")
+    public Result<Map<String, Object>> submitExcelJob(@RequestParam("file") MultipartFile file,
+                                                      @RequestParam("templateId") Long templateId) {
+        try {
+            BatchJob job = batchJobService.submitExcel(file, templateId);
+            Map<String, Object> data = new HashMap<>();
+            data.put("jobId", job.getId());
+            return Result.success("任务已提交", data);
+        } catch (Exception e) {
+            return Result.error("处理Excel失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询批量生成任务进度
+     * from：从第几个结果开始返回路径，轮询时传入已拿到的数量即可增量获取
+     */
+    @GetMapping("/batch-jobs/{jobId}")
+    public Result<Map<String, Object>> getBatchJob(@PathVariable String jobId,
+                                                   @RequestParam(defaultValue = "0") Integer from) {
+        try {
+            BatchJob job = batchJobService.getJob(jobId, UserContext.getUserId());
+            if (job == null) {
+                return Result.error("任务不存在或已过期");
+            }
+            return Result.success(job.snapshot(from));
         } catch (Exception e) {
             return Result.error(e.getMessage());
         }
@@ -143,6 +260,56 @@ public class PhotoController {
         }
     }
 
+    /**
+     * 批量生成并直接下载ZIP（图片不保存到服务器）
+     */
+    @PostMapping("/render-zip")
+    public void renderZip(@RequestBody Map<String, Object> params, HttpServletResponse response) throws IOException {
+        Object texts = params.get("textList");
+        Long templateId = parseTemplateId(params.get("templateId"));
+
+        if (!(texts instanceof List) || ((List<?>) texts).isEmpty()) {
+            errorResponseWriter.write(response, 400, "文字列表不能为空");
+            return;
+        }
+        List<String> textList = new ArrayList<>();
+        for (Object text : (List<?>) texts) {
+            if (text != null && !(text instanceof String)) {
+                errorResponseWriter.write(response, 400, "文字列表只能包含字符串");
+                return;
+            }
+            textList.add((String) text);
+        }
+        if (templateId == null) {
+            errorResponseWriter.write(response, 400, "模板ID无效");
+            return;
+        }
+        try {
+            photoService.renderZip(textList, templateId, response);
+        } catch (RuntimeException e) {
+            // ZIP 已开始写出时只能中断连接
+            if (!errorResponseWriter.write(response, 500, e.getMessage())) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 上传Excel批量生成并直接下载ZIP（图片不保存到服务器）
+     */
+    @PostMapping("/render-zip/excel")
+    public void renderZipFromExcel(@RequestParam("file") MultipartFile file,
+                                   @RequestParam("templateId") Long templateId,
+                                   HttpServletResponse response) throws IOException {
+        try {
+            photoService.renderZipFromExcel(file, templateId, response);
+        } catch (RuntimeException e) {
+            if (!errorResponseWriter.write(response, 500, e.getMessage())) {
+                throw e;
+            }
+        }
+    }
+
     /**
      * 上传Excel批量生成
      */
@@ -150,29 +317,11 @@ public class PhotoController {
     public Result<List<String>> uploadExcel(@RequestParam("file") MultipartFile file, 
                                             @RequestParam("templateId") Long templateId) {
         try {
-            List<String> textList = new ArrayList<>();
-            
-            Workbook workbook = new XSSFWorkbook(file.getInputStream());
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    String text = row.getCell(0).getStringCellValue();
-                    if (text != null && !text.trim().isEmpty()) {
-                        textList.add(text);
-                    }
-                }
-            }
-            
-            workbook.close();
-            
-            if (textList.isEmpty()) {
-                return Result.error("Excel中没有有效数据");
-            }
-            
-            List<String> imagePaths = photoService.batchGeneratePhotos(textList, templateId);
+            // 流式解析Excel，边解析边渲染；超出同步上限时返回 413
+            List<String> imagePaths = batchJobService.generateExcelSync(file, templateId);
             return Result.success("批量生成成功", imagePaths);
+        } catch (BatchTooLargeException e) {
+            return Result.error(413, e.getMessage());
         } catch (Exception e) {
             return Result.error("处理Excel失败：" + e.getMessage());
         }
@@ -184,32 +333,8 @@ public class PhotoController {
     @GetMapping("/user-stats")
     public Result<Map<String, Object>> getUserStats() {
         try {
-            String userId = UserContext.getUserId();
-            Map<String, Object> stats = new HashMap<>();
-
-            // 今日生成数
-            LambdaQueryWrapper<UsageRecord> todayWrapper = new LambdaQueryWrapper<>();
-            todayWrapper.eq(UsageRecord::getUserId, userId)
-                    .apply("DATE(create_time) = CURDATE()");
-            List<UsageRecord> todayRecords = usageRecordMapper.selectList(todayWrapper);
-            int todayCount = todayRecords.stream().mapToInt(UsageRecord::getCount).sum();
-            stats.put("todayCount", todayCount);
-
-            // 本月生成数
-            LambdaQueryWrapper<UsageRecord> monthWrapper = new LambdaQueryWrapper<>();
-            monthWrapper.eq(UsageRecord::getUserId, userId)
-                    .apply("YEAR(create_time) = YEAR(NOW()) AND MONTH(create_time) = MONTH(NOW())");
-            List<UsageRecord> monthRecords = usageRecordMapper.selectList(monthWrapper);
-            int monthCount = monthRecords.stream().mapToInt(UsageRecord::getCount).sum();
-            stats.put("monthCount", monthCount);
-
-            // 总生成数
-            LambdaQueryWrapper<UsageRecord> totalWrapper = new LambdaQueryWrapper<>();
-            totalWrapper.eq(UsageRecord::getUserId, userId);
-            List<UsageRecord> totalRecords = usageRecordMapper.selectList(totalWrapper);
-            int totalCount = totalRecords.stream().mapToInt(UsageRecord::getCount).sum();
-            stats.put("totalCount", totalCount);
-
+            // 从日汇总表读取，不加载使用记录明细
+            Map<String, Object> stats = usageStatService.getUserStats(UserContext.getUserId());
             return Result.success(stats);
         } catch (Exception e) {
             return Result.error(e.getMessage());
@@ -218,10 +343,12 @@ public class PhotoController {
 
     /**
      * 获取用户使用记录
+     * 批量记录默认只返回文字摘要，full 为 true 时还原完整文字和图片路径
      */
     @GetMapping("/user-records")
     public Result<Map<String, Object>> getUserRecords(@RequestParam(defaultValue = "1") Integer page,
-                                                      @RequestParam(defaultValue = "10") Integer size) {
+                                                      @RequestParam(defaultValue = "10") Integer size,
+                                                      @RequestParam(defaultValue = "false") Boolean full) {
         try {
             String userId = UserContext.getUserId();
 
@@ -231,6 +358,9 @@ public class PhotoController {
                     .orderByDesc(UsageRecord::getId);
 
             Page<UsageRecord> result = usageRecordMapper.selectPage(recordPage, wrapper);
+            if (full) {
+                photoService.expandRecords(result.getRecords());
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("records", result.getRecords());
@@ -244,6 +374,65 @@ public class PhotoController {
         }
     }
 
+    /**
+     * 获取用户使用记录（游标分页，按ID倒序）
+     * cursor 为上一页返回的 nextCursor，首页不传；withTotal 为 true 时附带近似总数
+     */
+    @GetMapping("/user-records/scroll")
+    public Result<Map<String, Object>> scrollUserRecords(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "10") Integer size,
+                                                         @RequestParam(defaultValue = "false") Boolean withTotal,
+                                                         @RequestParam(defaultValue = "false") Boolean full) {
+        try {
+            String userId = UserContext.getUserId();
+            int limit = PageCursor.clampSize(size);
+            String[] keys = PageCursor.decode(cursor, 1);
+
+            LambdaQueryWrapper<UsageRecord> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(UsageRecord::getUserId, userId)
+                    .lt(keys != null, UsageRecord::getId, keys != null ? Long.valueOf(keys[0]) : null)
+                    .orderByDesc(UsageRecord::getId)
+                    .last("LIMIT " + (limit + 1));
+            List<UsageRecord> records = usageRecordMapper.selectList(wrapper);
+
+            boolean hasMore = records.size() > limit;
+            if (hasMore) {
+                records = records.subList(0, limit);
+            }
+            if (full) {
+                photoService.expandRecords(records);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("records", records);
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", hasMore ? PageCursor.encode(records.get(limit - 1).getId()) : null);
+            if (withTotal) {
+                response.put("total", usageStatService.countRecords(userId));
+            }
+
+            return Result.success(response);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 获取单条使用记录（批量记录还原完整文字和图片路径）
+     */
+    @GetMapping("/user-records/{id}")
+    public Result<UsageRecord> getUserRecord(@PathVariable Long id) {
+        try {
+            UsageRecord record = usageRecordMapper.selectById(id);
+            if (record == null || !record.getUserId().equals(UserContext.getUserId())) {
+                return Result.error("记录不存在");
+            }
+            photoService.expandRecords(Collections.singletonList(record));
+            return Result.success(record);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
    /**
     * 获取当前用户的所有模板（分页）
     */
@@ -272,6 +461,44 @@ public class PhotoController {
        }
    }
 
+    /**
+     * 获取当前用户的模板（游标分页，按ID倒序）
+     * cursor 为上一页返回的 nextCursor，首页不传；withTotal 为 true 时附带总数（缓存一段时间）
+     */
+    @GetMapping("/my-templates/scroll")
+    public Result<Map<String, Object>> scrollMyTemplates(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "5") Integer size,
+                                                         @RequestParam(defaultValue = "false") Boolean withTotal) {
+        try {
+            String userId = UserContext.getUserId();
+            int limit = PageCursor.clampSize(size);
+            String[] keys = PageCursor.decode(cursor, 1);
+
+            LambdaQueryWrapper<PhotoTemplate> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(PhotoTemplate::getUserId, userId)
+                    .lt(keys != null, PhotoTemplate::getId, keys != null ? Long.valueOf(keys[0]) : null)
+                    .orderByDesc(PhotoTemplate::getId)
+                    .last("LIMIT " + (limit + 1));
+            List<PhotoTemplate> templates = photoService.list(wrapper);
+
+            boolean hasMore = templates.size() > limit;
+            if (hasMore) {
+                templates = templates.subList(0, limit);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("records", templates);
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", hasMore ? PageCursor.encode(templates.get(limit - 1).getId()) : null);
+            if (withTotal) {
+                response.put("total", photoService.countTemplates(userId));
+            }
+
+            return Result.success(response);
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+
    /**
     * 删除指定模板
     */
@@ -298,7 +525,7 @@ public class PhotoController {
            }
 
            // 删除模板
-           photoService.removeById(id);
+           photoService.deleteTemplate(id);
            return Result.success("删除成功");
        } catch (Exception e) {
            return Result.error("删除失败：" + e.getMessage());
@@ -0,0 +1,30 @@
+package com.photo.entity;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 批量使用记录的明细（gzip 压缩后存入 usage_record.payload）
+ * 图片路径二选一：
+ * - extension 不为空：图片文件名为 批次ID_序号 + 扩展名，按文字顺序推导，不单独存储
+ * - paths 不为空：无法推导时（去重命名、部分失败）逐条存储
+ * 两者都为空表示没有保存图片（例如直接下载 ZIP）
+ */
+@Data
+public class BatchPayload {
+
+    /**
+     * 文字列表（按提交顺序）
+     */
+    private List<String> texts;
+
+    /**
+     * 图片路径（无法推导时才有值）
+     */
+    private List<String> paths;
+
+    /**
+     * 图片扩展名（路径可推导时才有值）
+     */
+    private String extension;
+}
@@ -0,0 +1,38 @@
+package com.photo.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 共享登录会话实体类（每个用户一行）
+ */
+@Data
+@TableName("login_session")
+public class LoginSession {
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 当前有效 token（登出或过期后为空）
+     */
+    private String token;
+
+    /**
+     * 会话代次（每次登录、登出时递增）
+     */
+    private Long generation;
+
+    /**
+     * 过期时间
+     */
+    private LocalDateTime expireTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -65,6 +65,16 @@ public class PhotoTemplate {
      */
     private String fontColor;
 
+    /**
+     * 输出格式：png、jpeg，为空时使用全局配置
+     */
+    private String outputFormat;
+
+    /**
+     * 输出质量：JPEG 为 1-100 的质量，PNG 为 0-9 的压缩级别，为空时使用全局配置
+     */
+    private Integer outputQuality;
+
     /**
      * 是否启用：0-禁用，1-启用
      */
@@ -0,0 +1,44 @@
+package com.photo.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 使用量日汇总实体类（按 用户 + 模板 + 日期 汇总）
+ */
+@Data
+@TableName("usage_daily_stat")
+public class UsageDailyStat {
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 模板ID（无模板时为0）
+     */
+    private Long templateId;
+
+    /**
+     * 统计日期
+     */
+    private LocalDate statDate;
+
+    /**
+     * 操作次数（使用记录条数）
+     */
+    private Integer recordCount;
+
+    /**
+     * 生成数量（使用记录 count 之和）
+     */
+    private Long imageCount;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
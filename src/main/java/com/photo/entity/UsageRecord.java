@@ -1,6 +1,7 @@
 package com.photo.entity;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -50,10 +51,22 @@ public class UsageRecord {
     private Integer count;
 
     /**
-     * 图片路径（JSON格式存储多个路径）
+     * 图片路径（JSON格式存储多个路径；批量记录不存储，需要时由 payload 还原）
      */
     private String imagePaths;
 
+    /**
+     * 批次ID（批量生成时有值）
+     */
+    private String batchId;
+
+    /**
+     * 批量明细（gzip 压缩的 {@link BatchPayload}），列表查询不读取
+     */
+    @JsonIgnore
+    @TableField(select = false)
+    private byte[] payload;
+
     /**
      * 操作时间
      */
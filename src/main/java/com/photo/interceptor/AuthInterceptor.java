@@ -1,8 +1,7 @@
 package com.photo.interceptor;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.photo.entity.User;
-import com.photo.util.SessionManager;
+import com.photo.session.SessionStore;
 import com.photo.util.UserContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -16,7 +15,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * 登录校验拦截器（无 JWT，只校验随机 token + Session）
+ * 登录校验拦截器（随机 token 或签名 token，校验方式见 {@link SessionStore}）
  */
 @Component
 public class AuthInterceptor implements HandlerInterceptor {
@@ -24,8 +23,10 @@ public class AuthInterceptor implements HandlerInterceptor {
     @Autowired
     private ObjectMapper objectMapper;
 
-    private static final String TOKEN_SESSION_KEY = "token";
-    private static final String USER_SESSION_KEY = "user";
+    @Autowired
+    private SessionStore sessionStore;
+
+    private static final String RENEWED_TOKEN_HEADER = "X-Auth-Token";
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -37,38 +38,23 @@ public class AuthInterceptor implements HandlerInterceptor {
         String token = authHeader.substring(7);
 
         HttpSession session = request.getSession(false);
-        if (session == null) {
+        if (session == null && sessionStore.usesHttpSession()) {
             sendErrorResponse(response, 401, "登录已过期，请重新登录");
             return false;
         }
 
-        // 校验 token 与 session 映射是否一致
-        String mappedSessionId = SessionManager.getSessionIdByToken(token);
-        if (mappedSessionId == null || !mappedSessionId.equals(session.getId())) {
+        // token 有效且未被挤下线（本地登记时还需属于当前 session）
+        SessionStore.Authentication authentication = sessionStore.validate(token, session);
+        if (authentication == null) {
             sendErrorResponse(response, 401, "Token无效或已过期，请重新登录");
             return false;
         }
-
-        // 校验 session 中存的 token 一致
-        String sessionToken = (String) session.getAttribute(TOKEN_SESSION_KEY);
-        if (sessionToken == null || !sessionToken.equals(token)) {
-            sendErrorResponse(response, 401, "Token已失效，请重新登录");
-            return false;
-        }
-
-        // 校验 session 仍是当前有效会话（防止被挤下线）
-        if (!SessionManager.isSessionValid(session)) {
-            sendErrorResponse(response, 401, "账号已在其他设备登录，请重新登录");
-            return false;
-        }
-
-        User user = (User) session.getAttribute(USER_SESSION_KEY);
-        if (user == null) {
-            sendErrorResponse(response, 401, "用户信息不存在，请重新登录");
-            return false;
+        // 签名 token 临近过期时返回续期后的 token，前端收到后替换
+        if (authentication.getRenewedToken() != null) {
+            response.setHeader(RENEWED_TOKEN_HEADER, authentication.getRenewedToken());
         }
 
-        UserContext.setUser(user);
+        UserContext.setUser(authentication.getUser());
         return true;
     }
 
@@ -0,0 +1,129 @@
+package com.photo.job;
+
+import com.photo.render.OrderedBatch;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量生成任务
+ * - 由任务线程按顺序回调进度，请求线程读取快照
+ * - 结果路径与输入顺序一致，失败的条目对应位置为 null
+ */
+public class BatchJob implements OrderedBatch.Listener<String> {
+
+    /**
+     * 任务状态
+     */
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String userId;
+    private final Long templateId;
+    private final LocalDateTime createTime = LocalDateTime.now();
+
+    private Status status = Status.PENDING;
+    // 总数未知（如流式读取 Excel 尚未结束）时为 -1
+    private int total = -1;
+    private int succeeded;
+    private final List<String> paths = new ArrayList<>();
+    private final List<Map<String, Object>> failures = new ArrayList<>();
+    private String error;
+    private LocalDateTime finishTime;
+
+    public BatchJob(String id, String userId, Long templateId) {
+        this.id = id;
+        this.userId = userId;
+        this.templateId = templateId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    public synchronized void start() {
+        status = Status.RUNNING;
+    }
+
+    public synchronized void setTotal(int total) {
+        this.total = total;
+    }
+
+    @Override
+    public synchronized void onSuccess(int index, String path) {
+        paths.add(path);
+        succeeded++;
+    }
+
+    @Override
+    public synchronized void onFailure(int index, Throwable e) {
+        paths.add(null);
+        Map<String, Object> failure = new LinkedHashMap<>();
+        failure.put("index", index);
+        failure.put("message", e.getMessage());
+        failures.add(failure);
+    }
+
+    /**
+     * 任务整体失败（如模板不存在、文件无法解析）
+     */
+    public synchronized void fail(String message) {
+        this.error = message;
+    }
+
+    /**
+     * 任务结束（无论成功失败都必须调用）
+     */
+    public synchronized void finish() {
+        if (total < 0) {
+            total = paths.size();
+        }
+        status = error == null ? Status.COMPLETED : Status.FAILED;
+        finishTime = LocalDateTime.now();
+    }
+
+    public synchronized boolean isFinished() {
+        return finishTime != null;
+    }
+
+    public synchronized LocalDateTime getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * 任务状态快照
+     *
+     * @param from 从第几个结果开始返回路径（轮询时传入已拿到的数量即可增量获取）
+     */
+    public synchronized Map<String, Object> snapshot(int from) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("jobId", id);
+        view.put("templateId", templateId);
+        view.put("status", status.name());
+        view.put("total", total);
+        view.put("completed", paths.size());
+        view.put("succeeded", succeeded);
+        view.put("failed", failures.size());
+        int start = Math.min(Math.max(from, 0), paths.size());
+        view.put("from", start);
+        view.put("paths", new ArrayList<>(paths.subList(start, paths.size())));
+        view.put("failures", new ArrayList<>(failures));
+        view.put("error", error);
+        view.put("createTime", createTime);
+        view.put("finishTime", finishTime);
+        return view;
+    }
+}
@@ -0,0 +1,335 @@
+package com.photo.job;
+
+import com.photo.entity.UsageRecord;
+import com.photo.mapper.UsageRecordMapper;
+import com.photo.service.PhotoService;
+import com.photo.store.ImageCursor;
+import com.photo.store.ImageRegion;
+import com.photo.store.ImageStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 生成图片保留期清理
+ * - 后台线程每隔 tick-interval-ms 处理一小批：每次最多检查 files-per-tick 张图片，一轮遍历完整个存储后间隔 pass-interval-minutes 再开始下一轮
+ * - 超过 max-age-days 的图片删除（文件存储按修改时间，去重命中会刷新；打包存储按写入时间）
+ * - 总字节预算 max-bytes：每轮遍历时按图片年龄（小时）统计字节数，超出预算时算出能放进预算的最大年龄，
+ *   下一轮按 min(保留期, 预算年龄) 清理，即从最旧的图片开始删，比实际超出晚一轮生效
+ * - 最近 reference-days 天生成的图片，以及被这段时间内的使用记录引用的图片（去重共享的旧图片）不删除；
+ *   引用集合每轮开始时重建，之后每次处理前先读入新增的使用记录
+ * - exports 目录下的文件超过 export-max-age-hours 后删除
+ */
+@Slf4j
+@Component
+public class ImageRetentionSweeper {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // image_paths 为单个路径或 JSON 数组，直接取出其中的文件名
+    private static final Pattern UPLOAD_PATH = Pattern.compile("/uploads/([^\"\\s,\\]]+)");
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private UsageRecordMapper usageRecordMapper;
+
+    @Autowired
+    private PhotoService photoService;
+
+    private final boolean enabled;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+    private final long referenceMillis;
+    private final long exportMaxAgeMillis;
+    private final int filesPerTick;
+    private final long tickIntervalMillis;
+    private final long passIntervalMillis;
+    private final File exportDirectory;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    // 以下状态只由后台线程访问
+    private ImageCursor cursor;
+    private long passStartedAt;
+    private long nextPassAt;
+    private long passBytes;
+    // 图片年龄（小时）-> 字节数
+    private final TreeMap<Long, Long> ageHistogram = new TreeMap<>();
+    private final Set<String> referenced = new HashSet<>();
+    private LocalDateTime referenceSince;
+    private long lastRecordId;
+
+    // 上一轮算出的预算年龄，Long.MAX_VALUE 表示未超出预算
+    private volatile long budgetAgeMillis = Long.MAX_VALUE;
+    private volatile long lastPassBytes = -1;
+    private volatile long lastPassMillis;
+    private volatile long lastTickNanos;
+
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong skippedReferenced = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong exportsDeleted = new AtomicLong();
+    private final AtomicLong exportReclaimedBytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong tickNanos = new AtomicLong();
+    private final AtomicLong maxTickNanos = new AtomicLong();
+
+    public ImageRetentionSweeper(@Value("${retention.enabled:false}") boolean enabled,
+                                 @Value("${retention.max-age-days:30}") long maxAgeDays,
+                                 @Value("${retention.max-bytes:0}") long maxBytes,
+                                 @Value("${retention.reference-days:7}") long referenceDays,
+                                 @Value("${retention.export-max-age-hours:24}") long exportMaxAgeHours,
+                                 @Value("${retention.files-per-tick:200}") int filesPerTick,
+                                 @Value("${retention.tick-interval-ms:1000}") long tickIntervalMillis,
+                                 @Value("${retention.pass-interval-minutes:60}") long passIntervalMinutes,
+                                 @Value("${file.export-path}") String exportPath) {
+        this.enabled = enabled;
+        this.maxAgeMillis = maxAgeDays > 0 ? TimeUnit.DAYS.toMillis(maxAgeDays) : Long.MAX_VALUE;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.referenceMillis = TimeUnit.DAYS.toMillis(Math.max(1, referenceDays));
+        this.exportMaxAgeMillis = exportMaxAgeHours > 0 ? TimeUnit.HOURS.toMillis(exportMaxAgeHours) : Long.MAX_VALUE;
+        this.filesPerTick = Math.max(1, filesPerTick);
+        this.tickIntervalMillis = Math.max(1, tickIntervalMillis);
+        this.passIntervalMillis = TimeUnit.MINUTES.toMillis(Math.max(0, passIntervalMinutes));
+        this.exportDirectory = new File(exportPath);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "image-retention-sweeper");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeCursor();
+    }
+
+    /**
+     * 清理统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long tickCount = ticks.get();
+        long budgetAge = budgetAgeMillis;
+        stats.put("enabled", enabled);
+        stats.put("passes", passes.get());
+        stats.put("scanned", scanned.get());
+        stats.put("deleted", deleted.get());
+        stats.put("skippedReferenced", skippedReferenced.get());
+        stats.put("reclaimedBytes", reclaimedBytes.get());
+        stats.put("exportsDeleted", exportsDeleted.get());
+        stats.put("exportReclaimedBytes", exportReclaimedBytes.get());
+        stats.put("storedBytes", lastPassBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("budgetAgeHours", budgetAge == Long.MAX_VALUE ? -1 : budgetAge / HOUR_MILLIS);
+        stats.put("lastPassMillis", lastPassMillis);
+        stats.put("ticks", tickCount);
+        stats.put("lastTickMillis", lastTickNanos / 1_000_000.0);
+        stats.put("avgTickMillis", tickCount > 0 ? tickNanos.get() / 1_000_000.0 / tickCount : 0);
+        stats.put("maxTickMillis", maxTickNanos.get() / 1_000_000.0);
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                Thread.sleep(tickIntervalMillis);
+                tick();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.warn("清理过期图片失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    private void tick() throws IOException {
+        long now = System.currentTimeMillis();
+        if (cursor == null) {
+            if (now < nextPassAt) {
+                return;
+            }
+            beginPass(now);
+        }
+        long start = System.nanoTime();
+        try {
+            // 引用集合追上之前不删除图片
+            if (!loadReferences()) {
+                return;
+            }
+            for (int i = 0; i < filesPerTick; i++) {
+                String fileName = cursor.next();
+                if (fileName == null) {
+                    finishPass(System.currentTimeMillis());
+                    return;
+                }
+                check(fileName, now);
+            }
+        } catch (IOException | RuntimeException e) {
+            // 放弃本轮，下一轮重新开始
+            closeCursor();
+            nextPassAt = now + passIntervalMillis;
+            throw e;
+        } finally {
+            recordTick(System.nanoTime() - start);
+        }
+    }
+
+    private void beginPass(long now) throws IOException {
+        cursor = imageStore.openCursor();
+        passStartedAt = now;
+        passBytes = 0;
+        ageHistogram.clear();
+        referenced.clear();
+        referenceSince = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(referenceMillis));
+        lastRecordId = 0;
+    }
+
+    /**
+     * 读入一页新的使用记录引用的图片，返回是否已经读完
+     */
+    private boolean loadReferences() {
+        List<UsageRecord> page = usageRecordMapper.selectImagePathsSince(referenceSince, lastRecordId, filesPerTick);
+        if (page.isEmpty()) {
+            return true;
+        }
+        photoService.expandRecords(page);
+        for (UsageRecord record : page) {
+            if (record.getImagePaths() != null) {
+                Matcher matcher = UPLOAD_PATH.matcher(record.getImagePaths());
+                while (matcher.find()) {
+                    referenced.add(matcher.group(1));
+                }
+            }
+            lastRecordId = record.getId();
+        }
+        return page.size() < filesPerTick;
+    }
+
+    private void check(String fileName, long now) throws IOException {
+        ImageRegion region = imageStore.find(fileName);
+        if (region == null) {
+            return;
+        }
+        scanned.incrementAndGet();
+        long age = Math.max(0, now - region.getLastModified());
+        if (age >= Math.max(referenceMillis, Math.min(maxAgeMillis, budgetAgeMillis))) {
+            if (referenced.contains(fileName)) {
+                skippedReferenced.incrementAndGet();
+            } else if (imageStore.delete(fileName)) {
+                deleted.incrementAndGet();
+                reclaimedBytes.addAndGet(region.getLength());
+                return;
+            }
+        }
+        passBytes += region.getLength();
+        ageHistogram.merge(age / HOUR_MILLIS, region.getLength(), Long::sum);
+    }
+
+    private void finishPass(long now) {
+        closeCursor();
+        lastPassBytes = passBytes;
+        budgetAgeMillis = budgetAge();
+        lastPassMillis = now - passStartedAt;
+        passes.incrementAndGet();
+        sweepExports(now);
+        nextPassAt = now + passIntervalMillis;
+        ageHistogram.clear();
+        referenced.clear();
+        log.info("图片清理完成：保留 {} 字节，累计回收 {} 字节，耗时 {} ms",
+                passBytes, reclaimedBytes.get(), lastPassMillis);
+    }
+
+    /**
+     * 从最新的图片开始累加，超出预算的那个小时及更早的图片都应删除
+     */
+    private long budgetAge() {
+        if (maxBytes <= 0 || passBytes <= maxBytes) {
+            return Long.MAX_VALUE;
+        }
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : ageHistogram.entrySet()) {
+            total += entry.getValue();
+            if (total > maxBytes) {
+                return entry.getKey() * HOUR_MILLIS;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 导出目录文件少，整轮结束时一次清理
+     */
+    private void sweepExports(long now) {
+        File[] files = exportDirectory.listFiles();
+        if (files == null || exportMaxAgeMillis == Long.MAX_VALUE) {
+            return;
+        }
+        for (File file : files) {
+            long length = file.length();
+            if (file.isFile() && now - file.lastModified() >= exportMaxAgeMillis && file.delete()) {
+                exportsDeleted.incrementAndGet();
+                exportReclaimedBytes.addAndGet(length);
+            }
+        }
+    }
+
+    private void closeCursor() {
+        if (cursor == null) {
+            return;
+        }
+        try {
+            cursor.close();
+        } catch (IOException e) {
+            log.warn("关闭图片遍历游标失败：{}", e.getMessage());
+        }
+        cursor = null;
+    }
+
+    private void recordTick(long nanos) {
+        ticks.incrementAndGet();
+        tickNanos.addAndGet(nanos);
+        lastTickNanos = nanos;
+        maxTickNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,251 @@
+package com.photo.job;
+
+import com.photo.entity.UsageDailyStat;
+import com.photo.entity.UsageRecord;
+import com.photo.mapper.UsageDailyStatMapper;
+import com.photo.mapper.UsageRecordMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 使用记录异步写入
+ * - 请求线程只把记录放入有界队列，后台线程攒够条数或到达时间间隔后多行插入
+ * - 队列满时由提交线程直接插入，不丢记录，同时形成背压
+ * - 批量插入失败时逐条重试，只丢弃本身写不进去的记录
+ * - 使用记录与日汇总（usage_daily_stat）在同一事务中写入
+ * - 应用关闭时写完队列中剩余的记录
+ */
+@Slf4j
+@Component
+public class UsageRecordWriter {
+
+    @Autowired
+    private UsageRecordMapper usageRecordMapper;
+
+    @Autowired
+    private UsageDailyStatMapper usageDailyStatMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final boolean async;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final LinkedBlockingQueue<UsageRecord> queue;
+
+    private Thread worker;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenByCaller = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    public UsageRecordWriter(@Value("${usage-record.async:true}") boolean async,
+                             @Value("${usage-record.queue-capacity:10000}") int queueCapacity,
+                             @Value("${usage-record.batch-size:200}") int batchSize,
+                             @Value("${usage-record.flush-interval-ms:1000}") long flushIntervalMillis) {
+        this.async = async;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "usage-record-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 提交一条使用记录（异步模式下立即返回）
+     */
+    public void submit(UsageRecord record) {
+        if (async && running && queue.offer(record)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+        // 同步模式或队列已满：由调用线程直接写入
+        writtenByCaller.incrementAndGet();
+        flush(Collections.singletonList(record));
+    }
+
+    /**
+     * 写入统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long flushCount = flushes.get();
+        stats.put("async", async);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemainingCapacity", queue.remainingCapacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("writtenByCaller", writtenByCaller.get());
+        stats.put("dropped", dropped.get());
+        stats.put("flushes", flushCount);
+        stats.put("lastFlushMillis", lastFlushNanos / 1_000_000.0);
+        stats.put("avgFlushMillis", flushCount > 0 ? flushNanos.get() / 1_000_000.0 / flushCount : 0);
+        stats.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写完剩余记录
+        List<UsageRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void runLoop() {
+        List<UsageRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                UsageRecord first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 从第一条记录开始计时，攒够条数或超过间隔就写入
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    UsageRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断：当前批次照常写入，剩余记录由 shutdown 处理
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<UsageRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            write(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                drop(batch.get(0), e);
+            } else {
+                log.warn("批量写入使用记录失败，改为逐条写入：{}", e.getMessage());
+                for (UsageRecord record : batch) {
+                    insertOne(record);
+                }
+            }
+        } finally {
+            recordFlush(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在一个事务中写入使用记录并累加日汇总
+     */
+    private void write(List<UsageRecord> batch) {
+        transactionTemplate.execute(status -> {
+            if (batch.size() == 1) {
+                usageRecordMapper.insert(batch.get(0));
+            } else {
+                usageRecordMapper.insertBatch(batch);
+            }
+            usageDailyStatMapper.accumulate(aggregate(batch));
+            return null;
+        });
+    }
+
+    /**
+     * 按 用户 + 模板 + 日期 合并一批记录
+     */
+    private static List<UsageDailyStat> aggregate(List<UsageRecord> batch) {
+        Map<String, UsageDailyStat> stats = new LinkedHashMap<>();
+        for (UsageRecord record : batch) {
+            if (record.getCreateTime() == null) {
+                record.setCreateTime(LocalDateTime.now());
+            }
+            Long templateId = record.getTemplateId() != null ? record.getTemplateId() : 0L;
+            LocalDate day = record.getCreateTime().toLocalDate();
+            UsageDailyStat stat = stats.computeIfAbsent(record.getUserId() + "|" + templateId + "|" + day, key -> {
+                UsageDailyStat created = new UsageDailyStat();
+                created.setUserId(record.getUserId());
+                created.setTemplateId(templateId);
+                created.setStatDate(day);
+                created.setRecordCount(0);
+                created.setImageCount(0L);
+                return created;
+            });
+            stat.setRecordCount(stat.getRecordCount() + 1);
+            stat.setImageCount(stat.getImageCount() + (record.getCount() != null ? record.getCount() : 0));
+        }
+        return new ArrayList<>(stats.values());
+    }
+
+    private void insertOne(UsageRecord record) {
+        try {
+            write(Collections.singletonList(record));
+            written.incrementAndGet();
+        } catch (Exception e) {
+            drop(record, e);
+        }
+    }
+
+    private void drop(UsageRecord record, Exception e) {
+        dropped.incrementAndGet();
+        log.error("写入使用记录失败，userId={}，templateId={}：{}", record.getUserId(), record.getTemplateId(), e.getMessage());
+    }
+
+    private void recordFlush(long nanos) {
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(nanos);
+        lastFlushNanos = nanos;
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -1,6 +1,7 @@
 package com.photo.listener;
 
-import com.photo.util.SessionManager;
+import com.photo.session.SessionStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpSessionEvent;
@@ -11,8 +12,12 @@ import javax.servlet.http.HttpSessionListener;
  */
 @Component
 public class SessionCleanupListener implements HttpSessionListener {
+
+    @Autowired
+    private SessionStore sessionStore;
+
     @Override
     public void sessionDestroyed(HttpSessionEvent se) {
-        SessionManager.removeMappings(se.getSession());
+        sessionStore.removeSession(se.getSession());
     }
 }
@@ -0,0 +1,94 @@
+package com.photo.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.photo.entity.LoginSession;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 共享登录会话Mapper接口
+ */
+@Mapper
+public interface LoginSessionMapper extends BaseMapper<LoginSession> {
+
+    @Select("SELECT * FROM login_session WHERE user_id = #{userId}")
+    LoginSession selectByUserId(@Param("userId") String userId);
+
+    /**
+     * 按 token 查询未过期的会话
+     */
+    @Select("SELECT * FROM login_session WHERE token = #{token} AND expire_time > #{now}")
+    LoginSession selectActiveByToken(@Param("token") String token, @Param("now") LocalDateTime now);
+
+    /**
+     * 用户首次登录时插入（并发插入时只有一个成功）
+     */
+    @Insert("INSERT IGNORE INTO login_session (user_id, token, generation, expire_time) " +
+            "VALUES (#{userId}, #{token}, 1, #{expireTime})")
+    int insertIfAbsent(@Param("userId") String userId, @Param("token") String token,
+                       @Param("expireTime") LocalDateTime expireTime);
+
+    /**
+     * 单端登录 CAS：代次未变时替换为新 token
+     */
+    @Update("UPDATE login_session SET token = #{token}, generation = generation + 1, expire_time = #{expireTime} " +
+            "WHERE user_id = #{userId} AND generation = #{generation}")
+    int replaceToken(@Param("userId") String userId, @Param("generation") long generation,
+                     @Param("token") String token, @Param("expireTime") LocalDateTime expireTime);
+
+    /**
+     * 作废 token（保留用户行，代次递增）
+     */
+    @Update("UPDATE login_session SET token = NULL, generation = generation + 1 WHERE token = #{token}")
+    int clearToken(@Param("token") String token);
+
+    /**
+     * 作废用户当前代次（代次未变时递增，签名 token 模式登出时使用）
+     */
+    @Update("UPDATE login_session SET token = NULL, generation = generation + 1 " +
+            "WHERE user_id = #{userId} AND generation = #{generation}")
+    int bumpGeneration(@Param("userId") String userId, @Param("generation") long generation);
+
+    /**
+     * 滑动续期
+     */
+    @Update("UPDATE login_session SET expire_time = #{expireTime} WHERE token = #{token} AND expire_time > #{now}")
+    int extend(@Param("token") String token, @Param("expireTime") LocalDateTime expireTime,
+               @Param("now") LocalDateTime now);
+
+    /**
+     * 清除已过期的 token
+     */
+    @Update("UPDATE login_session SET token = NULL, generation = generation + 1 " +
+            "WHERE token IS NOT NULL AND expire_time <= #{now}")
+    int clearExpired(@Param("now") LocalDateTime now);
+
+    @Insert("INSERT INTO login_revocation (token) VALUES (#{token})")
+    int insertRevocation(@Param("token") String token);
+
+    @Select("SELECT COALESCE(MAX(id), 0) FROM login_revocation")
+    long selectMaxRevocationId();
+
+    /**
+     * 读取指定ID之后的作废记录
+     */
+    @Select("SELECT id, token FROM login_revocation WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Map<String, Object>> selectRevocationsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 读取ID区间内的作废记录（重查之前跳过的空缺ID）
+     */
+    @Select("SELECT id, token FROM login_revocation WHERE id BETWEEN #{fromId} AND #{toId}")
+    List<Map<String, Object>> selectRevocationsBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Delete("DELETE FROM login_revocation WHERE create_time < #{before}")
+    int deleteRevocationsBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,84 @@
+package com.photo.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.photo.entity.UsageDailyStat;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用量日汇总Mapper接口
+ */
+@Mapper
+public interface UsageDailyStatMapper extends BaseMapper<UsageDailyStat> {
+
+    /**
+     * 累加汇总（不存在时插入）
+     */
+    @Insert({"<script>",
+            "INSERT INTO usage_daily_stat (user_id, template_id, stat_date, record_count, image_count) VALUES",
+            "<foreach collection='stats' item='s' separator=','>",
+            "(#{s.userId}, #{s.templateId}, #{s.statDate}, #{s.recordCount}, #{s.imageCount})",
+            "</foreach>",
+            "ON DUPLICATE KEY UPDATE record_count = record_count + VALUES(record_count), image_count = image_count + VALUES(image_count)",
+            "</script>"})
+    int accumulate(@Param("stats") List<UsageDailyStat> stats);
+
+    /**
+     * 用户自指定日期起（含）的生成数量，from 为空时统计全部
+     */
+    @Select({"<script>",
+            "SELECT COALESCE(SUM(image_count), 0) FROM usage_daily_stat WHERE user_id = #{userId}",
+            "<if test='from != null'>AND stat_date &gt;= #{from}</if>",
+            "</script>"})
+    long sumImageCount(@Param("userId") String userId, @Param("from") LocalDate from);
+
+    /**
+     * 全部用户自指定日期起（含）的生成数量，from 为空时统计全部
+     */
+    @Select({"<script>",
+            "SELECT COALESCE(SUM(image_count), 0) FROM usage_daily_stat",
+            "<if test='from != null'>WHERE stat_date &gt;= #{from}</if>",
+            "</script>"})
+    long sumAllImageCount(@Param("from") LocalDate from);
+
+    /**
+     * 使用记录条数（userId 为空时统计全部用户）
+     */
+    @Select({"<script>",
+            "SELECT COALESCE(SUM(record_count), 0) FROM usage_daily_stat",
+            "<if test='userId != null'>WHERE user_id = #{userId}</if>",
+            "</script>"})
+    long sumRecordCount(@Param("userId") String userId);
+
+    /**
+     * 模板使用排行（自指定日期起）
+     */
+    @Select("SELECT s.template_id AS templateId, t.template_name AS templateName, " +
+            "SUM(s.record_count) AS recordCount, SUM(s.image_count) AS imageCount " +
+            "FROM usage_daily_stat s LEFT JOIN photo_template t ON t.id = s.template_id " +
+            "WHERE s.stat_date >= #{from} " +
+            "GROUP BY s.template_id, t.template_name ORDER BY imageCount DESC LIMIT #{limit}")
+    List<Map<String, Object>> selectTemplateRanking(@Param("from") LocalDate from, @Param("limit") int limit);
+
+    /**
+     * 清空汇总（重建前调用）
+     */
+    @Delete("DELETE FROM usage_daily_stat")
+    int deleteAll();
+
+    /**
+     * 根据使用记录重建汇总
+     */
+    @Insert("INSERT INTO usage_daily_stat (user_id, template_id, stat_date, record_count, image_count) " +
+            "SELECT user_id, IFNULL(template_id, 0), DATE(create_time), COUNT(*), SUM(count) " +
+            "FROM usage_record WHERE deleted = 0 " +
+            "GROUP BY user_id, IFNULL(template_id, 0), DATE(create_time)")
+    int rebuildFromRecords();
+}
@@ -2,11 +2,44 @@ package com.photo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.photo.entity.UsageRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 使用记录Mapper接口
  */
 @Mapper
 public interface UsageRecordMapper extends BaseMapper<UsageRecord> {
+
+    /**
+     * 多行插入使用记录（创建时间由调用方设置）
+     */
+    @Insert({"<script>",
+            "INSERT INTO usage_record (user_id, username, template_id, template_name, text_content, operation_type, count, image_paths, batch_id, payload, create_time, deleted) VALUES",
+            "<foreach collection='records' item='r' separator=','>",
+            "(#{r.userId}, #{r.username}, #{r.templateId}, #{r.templateName}, #{r.textContent}, #{r.operationType}, #{r.count}, #{r.imagePaths}, #{r.batchId}, #{r.payload}, #{r.createTime}, 0)",
+            "</foreach>",
+            "</script>"})
+    int insertBatch(@Param("records") List<UsageRecord> records);
+
+    /**
+     * 读取批量明细（只返回 id、batch_id 和 payload）
+     */
+    @Select({"<script>",
+            "SELECT id, batch_id, payload FROM usage_record WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<UsageRecord> selectPayloads(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按ID顺序分页读取指定时间之后的使用记录（只返回 id、image_paths 和 batch_id，批量明细由 expandRecords 还原；含已逻辑删除的记录）
+     */
+    @Select("SELECT id, image_paths, batch_id FROM usage_record WHERE create_time >= #{since} AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<UsageRecord> selectImagePathsSince(@Param("since") LocalDateTime since, @Param("afterId") long afterId, @Param("limit") int limit);
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.photo.render;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 渲染画布池
+ * - 画布按模板尺寸复用，每次渲染用整块数组复制把模板像素拷到画布上，不再分配整张新图
+ * - 空闲画布总字节数超过上限时淘汰最久未用的画布
+ * - 仅支持整型像素格式（模板缓存解码时已统一转换），其他格式退回按图复制
+ */
+@Component
+public class CanvasPool {
+
+    private final boolean enabled;
+    private final long maxBytes;
+
+    // 最近归还的在队头
+    private final ArrayDeque<BufferedImage> idle = new ArrayDeque<>();
+    private long idleBytes;
+
+    private long reused;
+    private long allocated;
+    private long discarded;
+
+    public CanvasPool(@Value("${render.canvas-pool.enabled:true}") boolean enabled,
+                      @Value("${render.canvas-pool.max-bytes:268435456}") long maxBytes) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 借出一块画布，内容已重置为模板像素
+     */
+    public BufferedImage acquire(BufferedImage template) {
+        if (!enabled || !isPoolable(template)) {
+            return TemplateImageCache.copyOf(template);
+        }
+        BufferedImage canvas = takeMatching(template);
+        if (canvas == null) {
+            canvas = new BufferedImage(template.getWidth(), template.getHeight(), template.getType());
+        }
+        int[] source = ((DataBufferInt) template.getRaster().getDataBuffer()).getData();
+        int[] target = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        System.arraycopy(source, 0, target, 0, source.length);
+        return canvas;
+    }
+
+    /**
+     * 归还画布（调用方不得再使用该画布）
+     */
+    public void release(BufferedImage canvas) {
+        if (!enabled || !isPoolable(canvas)) {
+            return;
+        }
+        long bytes = sizeOf(canvas);
+        synchronized (this) {
+            idle.addFirst(canvas);
+            idleBytes += bytes;
+            while (idleBytes > maxBytes && !idle.isEmpty()) {
+                idleBytes -= sizeOf(idle.removeLast());
+                discarded++;
+            }
+        }
+    }
+
+    /**
+     * 画布池统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("idleCanvases", idle.size());
+        stats.put("idleBytes", idleBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("reused", reused);
+        stats.put("allocated", allocated);
+        stats.put("discarded", discarded);
+        return stats;
+    }
+
+    private synchronized BufferedImage takeMatching(BufferedImage template) {
+        Iterator<BufferedImage> it = idle.iterator();
+        while (it.hasNext()) {
+            BufferedImage canvas = it.next();
+            if (canvas.getWidth() == template.getWidth()
+                    && canvas.getHeight() == template.getHeight()
+                    && canvas.getType() == template.getType()) {
+                it.remove();
+                idleBytes -= sizeOf(canvas);
+                reused++;
+                return canvas;
+            }
+        }
+        allocated++;
+        return null;
+    }
+
+    private static boolean isPoolable(BufferedImage image) {
+        int type = image.getType();
+        return type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+}
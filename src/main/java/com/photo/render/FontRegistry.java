@@ -0,0 +1,252 @@
+package com.photo.render;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.FontMetrics;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 字体登记
+ * - 启动时用 Font.createFont 加载 render.font.directory 下的 .ttf / .otf 文件，按字体族名（含中英文名）登记
+ * - 主字体 render.font.family 先在字体目录中找，再在系统字体中找；都没有时记录警告并改用字体目录中的第一个字体，
+ *   不再由 JDK 静默退回到逻辑字体
+ * - 后备顺序：render.font.fallback-families、字体目录中的其他字体、JDK 逻辑字体 Dialog
+ * - 每个字体加载时建立码点覆盖索引，每个字号的派生字体和字体度量只创建一次（{@link FontSet}）
+ */
+@Slf4j
+@Component
+public class FontRegistry {
+
+    private final File directory;
+    private final String family;
+    private final List<String> fallbackFamilies;
+
+    // 字体族名 / 字体名 -> 字体目录中加载的字体（1 磅）
+    private final Map<String, Font> loaded = new HashMap<>();
+    private final List<Font> loadedFonts = new ArrayList<>();
+    // 字体目录中加载的字体 -> 字体文件
+    private final Map<Font, File> sourceFiles = new IdentityHashMap<>();
+
+    // 主字体 + 后备字体（1 磅）及各自的覆盖索引，启动后不再变化
+    private Font[] chain;
+    private FontSet.Coverage[] coverages;
+    // 字体链指纹，去重文件名的一部分
+    private String fingerprint;
+
+    // 字号 -> 该字号下的字体组
+    private final Map<Integer, FontSet> fontSets = new ConcurrentHashMap<>();
+
+    private volatile long loadMillis;
+
+    private final AtomicLong derived = new AtomicLong();
+    private final AtomicLong fallbackLines = new AtomicLong();
+    private final AtomicLong missingGlyphs = new AtomicLong();
+
+    public FontRegistry(@Value("${render.font.directory:./fonts/}") String directory,
+                        @Value("${render.font.family:微软雅黑}") String family,
+                        @Value("${render.font.fallback-families:}") String fallbackFamilies) {
+        this.directory = new File(directory);
+        this.family = family.trim();
+        this.fallbackFamilies = new ArrayList<>();
+        for (String name : fallbackFamilies.split(",")) {
+            if (!name.trim().isEmpty()) {
+                this.fallbackFamilies.add(name.trim());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        long begin = System.currentTimeMillis();
+        loadDirectory();
+
+        Set<String> systemFamilies = new HashSet<>();
+        GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        systemFamilies.addAll(Arrays.asList(environment.getAvailableFontFamilyNames()));
+        systemFamilies.addAll(Arrays.asList(environment.getAvailableFontFamilyNames(Locale.ROOT)));
+
+        List<Font> fonts = new ArrayList<>();
+        Font primary = resolve(family, systemFamilies);
+        if (primary == null) {
+            primary = firstLoaded();
+            log.warn("主字体 {} 不存在，改用 {}", family, primary.getFontName());
+        }
+        fonts.add(primary);
+        for (String name : fallbackFamilies) {
+            Font fallback = resolve(name, systemFamilies);
+            if (fallback == null) {
+                log.warn("后备字体 {} 不存在，已忽略", name);
+            } else {
+                addDistinct(fonts, fallback);
+            }
+        }
+        for (Font font : loadedFonts) {
+            addDistinct(fonts, font);
+        }
+        addDistinct(fonts, new Font(Font.DIALOG, Font.PLAIN, 1));
+
+        chain = fonts.toArray(new Font[0]);
+        coverages = new FontSet.Coverage[chain.length];
+        for (int i = 0; i < chain.length; i++) {
+            coverages[i] = new FontSet.Coverage(chain[i]);
+        }
+        fingerprint = fingerprint();
+        loadMillis = System.currentTimeMillis() - begin;
+        log.info("字体已加载：主字体 {}，后备字体 {}，耗时 {} ms", primary.getFontName(), fallbackNames(), loadMillis);
+    }
+
+    /**
+     * 获取指定字号的字体组（首次使用时派生并测量，之后复用）
+     */
+    public FontSet fontSet(int fontSize) {
+        return fontSets.computeIfAbsent(fontSize, this::createFontSet);
+    }
+
+    /**
+     * 字体链指纹：按顺序列出每个字体的名称，字体目录中的字体再加上文件名、修改时间和大小
+     * 替换字体文件或调整后备顺序后（重启生效）指纹不同，去重不会复用旧字体渲染的图片
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 字体统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primary", chain != null ? chain[0].getFontName() : null);
+        stats.put("primaryCoveredChars", coverages != null ? coverages[0].coveredCount() : 0);
+        stats.put("fallbacks", fallbackNames());
+        stats.put("loadedFonts", loadedFonts.size());
+        stats.put("loadMillis", loadMillis);
+        stats.put("fontSets", fontSets.size());
+        stats.put("derivedFonts", derived.get());
+        stats.put("fallbackLines", fallbackLines.get());
+        stats.put("missingGlyphs", missingGlyphs.get());
+        return stats;
+    }
+
+    private FontSet createFontSet(int fontSize) {
+        Font[] fonts = new Font[chain.length];
+        FontMetrics[] metrics = new FontMetrics[chain.length];
+        for (int i = 0; i < chain.length; i++) {
+            fonts[i] = chain[i].deriveFont((float) fontSize);
+            metrics[i] = RenderPlan.measure(fonts[i]);
+            derived.incrementAndGet();
+        }
+        return new FontSet(fonts, metrics, coverages, fallbackLines, missingGlyphs);
+    }
+
+    private void loadDirectory() {
+        File[] files = directory.listFiles((dir, name) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".ttf") || lower.endsWith(".otf");
+        });
+        if (files == null) {
+            return;
+        }
+        // 文件名排序，同一字体族有多个字重时结果稳定
+        Arrays.sort(files);
+        GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        for (File file : files) {
+            Font font;
+            try {
+                font = Font.createFont(Font.TRUETYPE_FONT, file);
+            } catch (FontFormatException | IOException e) {
+                log.warn("加载字体 {} 失败：{}", file.getName(), e.getMessage());
+                continue;
+            }
+            loadedFonts.add(font);
+            sourceFiles.put(font, file);
+            // 同时登记到 JDK，其他按名称创建字体的地方也能用到
+            environment.registerFont(font);
+            for (String name : Arrays.asList(font.getFamily(Locale.ROOT), font.getFamily(Locale.SIMPLIFIED_CHINESE),
+                    font.getFamily(), font.getFontName(Locale.ROOT), font.getFontName())) {
+                Font existing = loaded.get(name);
+                // 同一字体族优先使用常规字重
+                if (existing == null || (!isRegular(existing) && isRegular(font))) {
+                    loaded.put(name, font);
+                }
+            }
+        }
+    }
+
+    /**
+     * 字体目录中的第一个字体（优先常规字重），目录为空时使用 Dialog
+     */
+    private Font firstLoaded() {
+        for (Font font : loadedFonts) {
+            if (isRegular(font)) {
+                return font;
+            }
+        }
+        return !loadedFonts.isEmpty() ? loadedFonts.get(0) : new Font(Font.DIALOG, Font.PLAIN, 1);
+    }
+
+    private String fingerprint() {
+        StringBuilder builder = new StringBuilder();
+        for (Font font : chain) {
+            builder.append(font.getFontName(Locale.ROOT));
+            File file = sourceFiles.get(font);
+            if (file != null) {
+                builder.append('|').append(file.getName())
+                        .append('|').append(file.lastModified())
+                        .append('|').append(file.length());
+            }
+            builder.append(';');
+        }
+        return builder.toString();
+    }
+
+    private Font resolve(String name, Set<String> systemFamilies) {
+        Font font = loaded.get(name);
+        if (font != null) {
+            return font;
+        }
+        return systemFamilies.contains(name) ? new Font(name, Font.PLAIN, 1) : null;
+    }
+
+    private static boolean isRegular(Font font) {
+        String fontName = font.getFontName(Locale.ROOT);
+        return fontName.equals(font.getFamily(Locale.ROOT)) || fontName.endsWith(" Regular");
+    }
+
+    private static void addDistinct(List<Font> fonts, Font font) {
+        for (Font existing : fonts) {
+            if (existing.getFontName(Locale.ROOT).equals(font.getFontName(Locale.ROOT))) {
+                return;
+            }
+        }
+        fonts.add(font);
+    }
+
+    private List<String> fallbackNames() {
+        List<String> names = new ArrayList<>();
+        if (chain != null) {
+            for (int i = 1; i < chain.length; i++) {
+                names.add(chain[i].getFontName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,129 @@
+package com.photo.render;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.TextAttribute;
+import java.text.AttributedString;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个字号下的字体组（不可变，由 {@link FontRegistry} 创建并缓存）
+ * 第 0 个是主字体，之后是按顺序尝试的后备字体；字符由第一个覆盖它的字体绘制，
+ * 是否覆盖查启动时建立的码点覆盖索引，不需要试绘
+ */
+public final class FontSet {
+
+    private final Font[] fonts;
+    private final FontMetrics[] metrics;
+    private final Coverage[] coverages;
+
+    private final AtomicLong fallbackLines;
+    private final AtomicLong missingGlyphs;
+
+    FontSet(Font[] fonts, FontMetrics[] metrics, Coverage[] coverages, AtomicLong fallbackLines, AtomicLong missingGlyphs) {
+        this.fonts = fonts;
+        this.metrics = metrics;
+        this.coverages = coverages;
+        this.fallbackLines = fallbackLines;
+        this.missingGlyphs = missingGlyphs;
+    }
+
+    public int size() {
+        return fonts.length;
+    }
+
+    public Font getFont(int index) {
+        return fonts[index];
+    }
+
+    public FontMetrics getMetrics(int index) {
+        return metrics[index];
+    }
+
+    /**
+     * 主字体是否覆盖文字中的全部字符（绝大多数文字走这条路径，直接用主字体绘制）
+     */
+    public boolean primaryCovers(String text) {
+        Coverage primary = coverages[0];
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (!primary.covers(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * 绘制该字符使用的字体下标：第一个覆盖它的字体，都不覆盖时用主字体（显示缺字方框）
+     */
+    public int fontIndex(int codePoint) {
+        for (int i = 0; i < coverages.length; i++) {
+            if (coverages[i].covers(codePoint)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 把主字体缺字的一行文字按字体切分成若干段，每段带上各自的字体属性，供 drawString 绘制
+     */
+    public AttributedString attributed(String line) {
+        fallbackLines.incrementAndGet();
+        AttributedString attributed = new AttributedString(line);
+        int runStart = 0;
+        int runFont = -1;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int index = fontIndex(codePoint);
+            if (index == 0 && !coverages[0].covers(codePoint)) {
+                missingGlyphs.incrementAndGet();
+            }
+            if (index != runFont) {
+                if (runFont >= 0) {
+                    attributed.addAttribute(TextAttribute.FONT, fonts[runFont], runStart, i);
+                }
+                runFont = index;
+                runStart = i;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (runFont >= 0) {
+            attributed.addAttribute(TextAttribute.FONT, fonts[runFont], runStart, line.length());
+        }
+        return attributed;
+    }
+
+    /**
+     * 字体的码点覆盖索引：BMP 字符在加载时逐个检查并记入位图，其余码点（表情等）直接询问字体
+     */
+    static final class Coverage {
+        private final Font font;
+        private final BitSet bmp;
+
+        Coverage(Font font) {
+            this.font = font;
+            this.bmp = new BitSet(Character.MAX_VALUE + 1);
+            for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+                // 控制字符（如 \r、\t）不换字体，与主字体直接绘制时一致
+                if (Character.isISOControl(ch) || (!Character.isSurrogate((char) ch) && font.canDisplay((char) ch))) {
+                    bmp.set(ch);
+                }
+            }
+        }
+
+        boolean covers(int codePoint) {
+            if (codePoint <= Character.MAX_VALUE) {
+                return bmp.get(codePoint);
+            }
+            return font.canDisplay(codePoint);
+        }
+
+        int coveredCount() {
+            return bmp.cardinality();
+        }
+    }
+}
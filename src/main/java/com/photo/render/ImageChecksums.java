@@ -0,0 +1,99 @@
+package com.photo.render;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 生成图片的 CRC32 缓存（导出 ZIP 时使用）
+ * - 生成图片时边写边算 CRC 并登记，导出时无需再读一遍文件
+ * - 生成后的图片不会被改写，按 文件名 + 文件大小 校验；未登记的文件导出时现算
+ * - 按条目数做 LRU 淘汰
+ */
+@Component
+public class ImageChecksums {
+
+    private final int maxEntries;
+
+    // 文件名 -> 校验信息（访问顺序，用于 LRU）
+    private final LinkedHashMap<String, Checksum> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong computed = new AtomicLong();
+
+    public ImageChecksums(@Value("${render.export.checksum-cache-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 登记生成图片的 CRC
+     */
+    public void put(String fileName, long size, long crc) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(fileName, new Checksum(size, crc));
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * 获取文件 CRC，未登记或大小不符时读取文件计算
+     */
+    public long get(File file) throws IOException {
+        long size = file.length();
+        Checksum checksum;
+        synchronized (this) {
+            checksum = entries.get(file.getName());
+        }
+        if (checksum != null && checksum.size == size) {
+            hits.incrementAndGet();
+            return checksum.crc;
+        }
+
+        computed.incrementAndGet();
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        put(file.getName(), size, crc.getValue());
+        return crc.getValue();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("computed", computed.get());
+        return stats;
+    }
+
+    private static final class Checksum {
+        private final long size;
+        private final long crc;
+
+        private Checksum(long size, long crc) {
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.photo.render;
+
+import com.photo.entity.PhotoTemplate;
+import com.photo.store.ImageStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成图片去重（按内容寻址）
+ * - 文件名取 模板ID + 模板版本 + 字体链指纹 + 输出参数 + 文字 的 SHA-256，相同输入直接返回已有图片
+ * - 同一文件名的并发请求只有一个真正渲染，其余等待其结果
+ * - 图片由 {@link ImageStore} 保存，已存在的图片一定是完整的
+ * - 同一张图片可能被多条使用记录引用，清理前需确认没有记录引用
+ */
+@Component
+public class ImageDeduplicator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private FontRegistry fontRegistry;
+
+    private final boolean enabled;
+
+    // 正在生成的文件名 -> 生成结果
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    public ImageDeduplicator(@Value("${render.dedup.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 图片写入（渲染并保存到图片存储）
+     */
+    public interface ImageWriter {
+        void write(String fileName) throws IOException;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算输出文件名
+     *
+     * @param templateFile 模板图片文件（最后修改时间作为模板版本的一部分）
+     */
+    public String fileName(PhotoTemplate template, File templateFile, OutputSettings settings, String text) {
+        MessageDigest digest = sha256();
+        update(digest, String.valueOf(template.getId()));
+        update(digest, String.valueOf(template.getUpdateTime()));
+        update(digest, String.valueOf(templateFile.lastModified()));
+        update(digest, fontRegistry.getFingerprint());
+        update(digest, settings.fingerprint());
+        update(digest, text);
+        return toHex(digest.digest()) + settings.getExtension();
+    }
+
+    /**
+     * 获取图片：图片已存在时直接返回，否则调用 writer 生成（同名并发请求只生成一次）
+     */
+    public void getOrCreate(String fileName, ImageWriter writer) throws IOException {
+        if (imageStore.touch(fileName)) {
+            hits.incrementAndGet();
+            return;
+        }
+
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(fileName, mine);
+        if (running != null) {
+            collapsed.incrementAndGet();
+            await(running);
+            return;
+        }
+
+        try {
+            if (imageStore.touch(fileName)) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                writer.write(fileName);
+            }
+            mine.complete(null);
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(fileName, mine);
+        }
+    }
+
+    /**
+     * 去重统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("collapsed", collapsed.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private static void await(CompletableFuture<Void> running) throws IOException {
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待图片生成被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        // 先写长度，避免不同字段拼接后产生相同输入
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
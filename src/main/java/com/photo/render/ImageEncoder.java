@@ -0,0 +1,154 @@
+package com.photo.render;
+
+import com.photo.entity.PhotoTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图片输出编码器
+ * - 全局默认参数来自配置，模板可单独指定输出格式和质量
+ * - PNG 使用自带编码器（可调压缩级别和过滤方式），JPEG 复用每个线程的 ImageWriter
+ * - 渲染队列积压时自动降低 PNG 压缩强度（自适应模式）
+ */
+@Component
+public class ImageEncoder {
+
+    @Autowired
+    private RenderExecutor renderExecutor;
+
+    @Value("${render.output.format:png}")
+    private String defaultFormat;
+
+    @Value("${render.output.png-compression-level:6}")
+    private int pngLevel;
+
+    @Value("${render.output.png-filter:sub}")
+    private String pngFilter;
+
+    @Value("${render.output.jpeg-quality:90}")
+    private int jpegQuality;
+
+    @Value("${render.output.adaptive-queue-depth:0}")
+    private int adaptiveQueueDepth;
+
+    @Value("${render.output.adaptive-png-compression-level:1}")
+    private int adaptivePngLevel;
+
+    private OutputSettings defaultSettings;
+    private PngEncoder.Filter defaultPngFilter;
+
+    // ImageWriter 非线程安全，每个线程复用一个
+    private final ThreadLocal<ImageWriter> jpegWriters = ThreadLocal.withInitial(
+            () -> ImageIO.getImageWritersByFormatName("jpeg").next());
+
+    private final AtomicLong encoded = new AtomicLong();
+    private final AtomicLong adaptiveEncoded = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 关闭 ImageIO 的临时文件缓存，编码结果直接写内存或目标流
+        ImageIO.setUseCache(false);
+
+        defaultPngFilter = parseFilter(pngFilter);
+        OutputSettings.Format format = OutputSettings.Format.parse(defaultFormat);
+        defaultSettings = format == OutputSettings.Format.JPEG
+                ? OutputSettings.jpeg(jpegQuality)
+                : OutputSettings.png(pngLevel, defaultPngFilter);
+    }
+
+    /**
+     * 解析模板的输出参数：模板未配置的部分使用全局默认值
+     * outputQuality 对 JPEG 为 1-100 的质量，对 PNG 为 0-9 的压缩级别
+     */
+    public OutputSettings resolve(PhotoTemplate template) {
+        OutputSettings.Format format = OutputSettings.Format.parse(template.getOutputFormat());
+        Integer quality = template.getOutputQuality();
+        if (format == null && quality == null) {
+            return defaultSettings;
+        }
+        if (format == null) {
+            format = defaultSettings.getFormat();
+        }
+        if (format == OutputSettings.Format.JPEG) {
+            return OutputSettings.jpeg(quality != null ? quality : jpegQuality);
+        }
+        return OutputSettings.png(quality != null ? quality : pngLevel, defaultPngFilter);
+    }
+
+    /**
+     * 编码图片
+     */
+    public void encode(BufferedImage image, OutputSettings settings, OutputStream out) throws IOException {
+        encoded.incrementAndGet();
+        if (settings.getFormat() == OutputSettings.Format.JPEG) {
+            writeJpeg(image, settings.getJpegQuality(), out);
+            return;
+        }
+        int level = settings.getPngLevel();
+        PngEncoder.Filter filter = settings.getPngFilter();
+        if (adaptiveQueueDepth > 0 && renderExecutor.getQueueDepth() >= adaptiveQueueDepth && level > adaptivePngLevel) {
+            // 队列积压时用更快的压缩，输出像素不变，只是文件略大
+            adaptiveEncoded.incrementAndGet();
+            level = adaptivePngLevel;
+            filter = PngEncoder.Filter.SUB;
+        }
+        PngEncoder.write(image, level, filter, out);
+    }
+
+    /**
+     * 编码统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("defaultSettings", String.valueOf(defaultSettings));
+        stats.put("encoded", encoded.get());
+        stats.put("adaptiveEncoded", adaptiveEncoded.get());
+        return stats;
+    }
+
+    private void writeJpeg(BufferedImage image, int quality, OutputStream out) throws IOException {
+        BufferedImage rgb = image;
+        if (image.getColorModel().hasAlpha()) {
+            // JPEG 不支持透明通道，铺白底后输出
+            rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = rgb.createGraphics();
+            g2d.drawImage(image, 0, 0, Color.WHITE, null);
+            g2d.dispose();
+        }
+
+        ImageWriter writer = jpegWriters.get();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality / 100f);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+            ios.flush();
+        } finally {
+            writer.reset();
+        }
+    }
+
+    private static PngEncoder.Filter parseFilter(String name) {
+        try {
+            return PngEncoder.Filter.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return PngEncoder.Filter.SUB;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.photo.render;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 逐字符折行器
+ * - 按段落（\n）分割，每行尽可能多地容纳字符，单个字符超宽时强制单独成行
+ * - 行宽由缓存的单字符宽度累加得到，每个段落只扫描一遍
+ * - 与绘制无关，可单独用于测量排版结果
+ *
+ * 对需要复杂排版的字符（组合符号、代理对、从右到左文字等）以及开启小数度量的字体，
+ * 累加宽度与整串测量不一定一致，这类段落退回逐前缀调用 stringWidth 的方式，保证结果不变
+ * 主字体缺字的段落（需要后备字体）按各字符所用字体的宽度累加
+ */
+public final class LineBreaker {
+
+    private static final int MAX_CACHED_FONTS = 256;
+
+    // (字体, 渲染上下文) -> BMP 字符宽度表，-1 表示尚未测量
+    private static final Map<AdvanceKey, int[]> ADVANCE_CACHE = new ConcurrentHashMap<>();
+
+    private LineBreaker() {
+    }
+
+    /**
+     * 将文字按最大宽度折行
+     */
+    public static List<String> breakLines(String text, FontMetrics fm, int maxWidth) {
+        return breakLines(text, fm, null, maxWidth);
+    }
+
+    /**
+     * 将文字按最大宽度折行（主字体缺字的段落按覆盖各字符的字体测量）
+     */
+    public static List<String> breakLines(String text, FontSet fonts, int maxWidth) {
+        return breakLines(text, fonts.getMetrics(0), fonts, maxWidth);
+    }
+
+    private static List<String> breakLines(String text, FontMetrics fm, FontSet fonts, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        int[] advances = advancesFor(fm);
+        String[] paragraphs = text.split("\n");
+
+        for (String paragraph : paragraphs) {
+            if (paragraph.isEmpty()) {
+                lines.add("");
+                continue;
+            }
+            if (fonts != null && !fonts.primaryCovers(paragraph)) {
+                breakParagraphByFonts(paragraph, fonts, maxWidth, lines);
+            } else if (advances != null && isSimple(paragraph)) {
+                breakParagraph(paragraph, fm, advances, maxWidth, lines);
+            } else {
+                breakParagraphByPrefix(paragraph, fm, maxWidth, lines);
+            }
+        }
+        return lines;
+    }
+
+    private static void breakParagraph(String paragraph, FontMetrics fm, int[] advances, int maxWidth, List<String> lines) {
+        int length = paragraph.length();
+        int start = 0;
+        while (start < length) {
+            // 找到当前行能容纳的最大字符数
+            int end = start;
+            int width = 0;
+            while (end < length) {
+                width += advance(paragraph.charAt(end), fm, advances);
+                if (width > maxWidth) {
+                    break;
+                }
+                end++;
+            }
+
+            if (end == start) {
+                // 单个字符就超宽，强制换行
+                lines.add(paragraph.substring(start, start + 1));
+                start++;
+            } else {
+                lines.add(paragraph.substring(start, end));
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * 逐前缀测量整串宽度（原始实现，用于复杂文字）
+     */
+    private static void breakParagraphByPrefix(String paragraph, FontMetrics fm, int maxWidth, List<String> lines) {
+        int start = 0;
+        while (start < paragraph.length()) {
+            int end = start;
+            while (end < paragraph.length()) {
+                String testLine = paragraph.substring(start, end + 1);
+                if (fm.stringWidth(testLine) > maxWidth) {
+                    break;
+                }
+                end++;
+            }
+
+            if (end == start) {
+                lines.add(paragraph.substring(start, start + 1));
+                start++;
+            } else {
+                lines.add(paragraph.substring(start, end));
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * 多字体段落：每个字符按覆盖它的字体取宽度后累加（按码点处理，不会拆开代理对）
+     */
+    private static void breakParagraphByFonts(String paragraph, FontSet fonts, int maxWidth, List<String> lines) {
+        int[][] advances = new int[fonts.size()][];
+        int length = paragraph.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            int width = 0;
+            while (end < length) {
+                int codePoint = paragraph.codePointAt(end);
+                int index = fonts.fontIndex(codePoint);
+                FontMetrics fm = fonts.getMetrics(index);
+                if (codePoint <= Character.MAX_VALUE) {
+                    if (advances[index] == null) {
+                        advances[index] = advancesFor(fm);
+                    }
+                    width += advances[index] != null ? advance((char) codePoint, fm, advances[index]) : fm.charWidth(codePoint);
+                } else {
+                    width += fm.charWidth(codePoint);
+                }
+                if (width > maxWidth) {
+                    break;
+                }
+                end += Character.charCount(codePoint);
+            }
+
+            if (end == start) {
+                // 单个字符就超宽，强制换行
+                end = start + Character.charCount(paragraph.codePointAt(start));
+            }
+            lines.add(paragraph.substring(start, end));
+            start = end;
+        }
+    }
+
+    private static int advance(char ch, FontMetrics fm, int[] advances) {
+        int width = advances[ch];
+        if (width < 0) {
+            // 并发下重复测量同一字符结果相同，无需加锁
+            width = fm.charWidth(ch);
+            advances[ch] = width;
+        }
+        return width;
+    }
+
+    /**
+     * 获取字体对应的宽度表；小数度量或带排版属性的字体返回 null（不能按字符累加）
+     */
+    private static int[] advancesFor(FontMetrics fm) {
+        Font font = fm.getFont();
+        FontRenderContext frc = fm.getFontRenderContext();
+        if (frc.usesFractionalMetrics() || font.hasLayoutAttributes()) {
+            return null;
+        }
+        AdvanceKey key = new AdvanceKey(font, frc);
+        int[] advances = ADVANCE_CACHE.get(key);
+        if (advances == null) {
+            if (ADVANCE_CACHE.size() >= MAX_CACHED_FONTS) {
+                ADVANCE_CACHE.clear();
+            }
+            int[] created = new int[Character.MAX_VALUE + 1];
+            Arrays.fill(created, -1);
+            advances = ADVANCE_CACHE.putIfAbsent(key, created);
+            if (advances == null) {
+                advances = created;
+            }
+        }
+        return advances;
+    }
+
+    /**
+     * 段落中的字符是否都可按单字符宽度累加
+     */
+    private static boolean isSimple(String paragraph) {
+        for (int i = 0; i < paragraph.length(); i++) {
+            if (!isSimple(paragraph.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSimple(char ch) {
+        if (ch < 0x0300) {
+            return true;
+        }
+        switch (Character.getType(ch)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+            case Character.SURROGATE:
+            case Character.PRIVATE_USE:
+            case Character.UNASSIGNED:
+                return false;
+            default:
+                break;
+        }
+        return (ch >= 0x0370 && ch < 0x0590)      // 希腊文、西里尔文、亚美尼亚文
+                || (ch >= 0x1E00 && ch < 0x2000)  // 拉丁文扩展附加、希腊文扩展
+                || (ch >= 0x2010 && ch < 0x2028)  // 常用标点
+                || (ch >= 0x2030 && ch < 0x205F)
+                || (ch >= 0x2070 && ch < 0x20D0)  // 上下标、货币符号
+                || (ch >= 0x2100 && ch < 0x2C00)  // 字母式符号、箭头、数学符号、制表符等
+                || (ch >= 0x2E80 && ch < 0xA4D0)  // CJK 部首、标点、假名、注音、汉字、彝文
+                || (ch >= 0xAC00 && ch < 0xD7A4)  // 韩文音节
+                || (ch >= 0xF900 && ch < 0xFB00)  // CJK 兼容汉字
+                || (ch >= 0xFE30 && ch < 0xFE50)  // CJK 兼容形式
+                || (ch >= 0xFF00 && ch < 0xFFF0); // 半角及全角形式
+    }
+
+    private static final class AdvanceKey {
+        private final Font font;
+        private final FontRenderContext frc;
+
+        private AdvanceKey(Font font, FontRenderContext frc) {
+            this.font = font;
+            this.frc = frc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AdvanceKey)) {
+                return false;
+            }
+            AdvanceKey other = (AdvanceKey) o;
+            return font.equals(other.font) && frc.equals(other.frc);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, frc);
+        }
+    }
+}
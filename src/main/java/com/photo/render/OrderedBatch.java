@@ -0,0 +1,108 @@
+package com.photo.render;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * 有序批处理：任务并行执行，结果按提交顺序在提交线程上回调
+ * - 同一批次最多同时占用 window 个任务，超出时 submit 阻塞，等待最早的任务完成（背压）
+ * - 非线程安全，只能由一个线程提交
+ * - 用 try-with-resources 保证异常时取消未完成的任务
+ */
+public final class OrderedBatch<T, R> implements AutoCloseable {
+
+    /**
+     * 结果回调（按提交顺序调用）
+     */
+    public interface Listener<R> {
+
+        void onSuccess(int index, R result);
+
+        void onFailure(int index, Throwable error);
+    }
+
+    private final ExecutorService executor;
+    private final Function<? super T, ? extends R> task;
+    private final Listener<? super R> listener;
+    private final int window;
+
+    private final ArrayDeque<Future<R>> inflight = new ArrayDeque<>();
+    private int submitted;
+    private int delivered;
+
+    OrderedBatch(ExecutorService executor, Function<? super T, ? extends R> task, Listener<? super R> listener, int window) {
+        this.executor = executor;
+        this.task = task;
+        this.listener = listener;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * 提交一个任务，窗口已满时先等待最早的任务完成并回调
+     */
+    public void submit(T item) {
+        while (inflight.size() >= window) {
+            deliverNext();
+        }
+        inflight.add(executor.submit(() -> task.apply(item)));
+        submitted++;
+    }
+
+    /**
+     * 等待所有任务完成并按顺序回调
+     */
+    public void finish() {
+        while (!inflight.isEmpty()) {
+            deliverNext();
+        }
+    }
+
+    /**
+     * 已提交的任务数
+     */
+    public int getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * 已回调的任务数
+     */
+    public int getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * 取消尚未完成的任务（finish 之后调用无影响）
+     */
+    @Override
+    public void close() {
+        Future<R> future;
+        while ((future = inflight.poll()) != null) {
+            future.cancel(true);
+        }
+    }
+
+    private void deliverNext() {
+        Future<R> future = inflight.poll();
+        int index = delivered++;
+        R result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("渲染任务被中断");
+        } catch (ExecutionException e) {
+            listener.onFailure(index, e.getCause());
+            return;
+        } catch (CancellationException e) {
+            listener.onFailure(index, e);
+            return;
+        }
+        listener.onSuccess(index, result);
+    }
+}
@@ -0,0 +1,97 @@
+package com.photo.render;
+
+/**
+ * 输出编码参数（不可变）
+ */
+public final class OutputSettings {
+
+    /**
+     * 输出格式
+     */
+    public enum Format {
+        PNG(".png"), JPEG(".jpg");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 解析格式名称，无法识别时返回 null
+         */
+        public static Format parse(String name) {
+            if (name == null || name.trim().isEmpty()) {
+                return null;
+            }
+            String normalized = name.trim().toLowerCase();
+            if ("png".equals(normalized)) {
+                return PNG;
+            }
+            if ("jpg".equals(normalized) || "jpeg".equals(normalized)) {
+                return JPEG;
+            }
+            return null;
+        }
+    }
+
+    private final Format format;
+    private final int pngLevel;
+    private final PngEncoder.Filter pngFilter;
+    private final int jpegQuality;
+
+    private OutputSettings(Format format, int pngLevel, PngEncoder.Filter pngFilter, int jpegQuality) {
+        this.format = format;
+        this.pngLevel = pngLevel;
+        this.pngFilter = pngFilter;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public static OutputSettings png(int level, PngEncoder.Filter filter) {
+        return new OutputSettings(Format.PNG, Math.max(0, Math.min(9, level)), filter, 0);
+    }
+
+    public static OutputSettings jpeg(int quality) {
+        return new OutputSettings(Format.JPEG, 0, null, Math.max(1, Math.min(100, quality)));
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getPngLevel() {
+        return pngLevel;
+    }
+
+    public PngEncoder.Filter getPngFilter() {
+        return pngFilter;
+    }
+
+    public int getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public String getExtension() {
+        return format.getExtension();
+    }
+
+    public String getContentType() {
+        return format == Format.JPEG ? "image/jpeg" : "image/png";
+    }
+
+    /**
+     * 影响输出像素的参数摘要（PNG 为无损格式，压缩参数不影响像素）
+     */
+    public String fingerprint() {
+        return format == Format.JPEG ? "jpeg:" + jpegQuality : "png";
+    }
+
+    @Override
+    public String toString() {
+        return format == Format.JPEG ? "jpeg(q=" + jpegQuality + ")" : "png(level=" + pngLevel + ", filter=" + pngFilter + ")";
+    }
+}
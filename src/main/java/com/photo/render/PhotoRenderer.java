@@ -0,0 +1,201 @@
+package com.photo.render;
+
+import com.photo.entity.PhotoTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图片渲染器：在模板图片上绘制文字
+ * 模板像素和渲染计划都来自缓存，画布来自画布池，这里只做排版和绘制
+ */
+@Component
+public class PhotoRenderer {
+
+    @Autowired
+    private TemplateImageCache templateImageCache;
+
+    @Autowired
+    private RenderPlanCache renderPlanCache;
+
+    @Autowired
+    private CanvasPool canvasPool;
+
+    // 用于统计每次渲染在当前线程上分配的字节数
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = initThreadMXBean();
+
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong previewed = new AtomicLong();
+
+    /**
+     * 渲染后的图片处理（编码、写出等），图片只在回调内有效
+     */
+    public interface ImageHandler<T> {
+        T handle(BufferedImage image) throws IOException;
+    }
+
+    /**
+     * 渲染一张图片并交给 handler 处理，处理完成后画布归还画布池
+     */
+    public <T> T render(PhotoTemplate template, String text, ImageHandler<T> handler) throws IOException {
+        long allocatedBefore = allocatedBytes();
+        File templateFile = resolveTemplateFile(template);
+        BufferedImage source = templateImageCache.get(template.getId(), templateFile);
+        RenderPlan plan = renderPlanCache.get(template, source.getWidth(), source.getHeight());
+
+        BufferedImage canvas = canvasPool.acquire(source);
+        try {
+            draw(canvas, plan, text, 1D, false);
+            return handler.handle(canvas);
+        } finally {
+            canvasPool.release(canvas);
+            recordAllocation(allocatedBefore);
+        }
+    }
+
+    /**
+     * 渲染低分辨率预览（模板编辑时使用，模板配置可以是尚未保存的修改）
+     * 排版按原图尺寸计算，折行位置与正式生成一致；绘制时在缩小后的模板上整体按比例缩放
+     */
+    public <T> T renderPreview(PhotoTemplate template, String text, int maxSize, ImageHandler<T> handler) throws IOException {
+        File templateFile = resolveTemplateFile(template);
+        TemplateImageCache.Scaled scaled = templateImageCache.getScaled(template.getId(), templateFile, maxSize);
+        // 配置可能尚未保存，不经过渲染计划缓存
+        RenderPlan plan = renderPlanCache.compile(template, scaled.getSourceWidth(), scaled.getSourceHeight());
+
+        BufferedImage canvas = canvasPool.acquire(scaled.getImage());
+        try {
+            draw(canvas, plan, text, scaled.getScale(), true);
+            previewed.incrementAndGet();
+            return handler.handle(canvas);
+        } finally {
+            canvasPool.release(canvas);
+        }
+    }
+
+    /**
+     * 绘制文字（预览时坐标按比例缩放，使用速度优先的绘制提示）
+     */
+    private void draw(BufferedImage image, RenderPlan plan, String text, double scale, boolean preview) {
+        Graphics2D g2d = image.createGraphics();
+        try {
+            if (preview) {
+                RenderPlan.applyPreviewRenderingHints(g2d);
+            } else {
+                RenderPlan.applyRenderingHints(g2d);
+            }
+            if (scale != 1D) {
+                g2d.scale(scale, scale);
+            }
+
+            // 清除原有文字区域（用指定的覆盖颜色填充）
+            g2d.setColor(plan.getCoverColor());
+            g2d.fillRect(plan.getTextX(), plan.getTextY(), plan.getTextWidth(), plan.getTextHeight());
+
+            g2d.setFont(plan.getFont());
+            g2d.setColor(plan.getFontColor());
+
+            // 绘制每一行文字（左对齐，紧贴左上角），主字体缺字的行按字体分段绘制
+            FontSet fontSet = plan.getFontSet();
+            List<String> lines = LineBreaker.breakLines(text, fontSet, plan.getTextWidth());
+            int x = plan.getTextX();
+            int startY = plan.getTextY() + plan.getAscent();
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                int y = startY + i * plan.getLineHeight();
+                if (fontSet.primaryCovers(line)) {
+                    g2d.drawString(line, x, y);
+                } else {
+                    g2d.drawString(fontSet.attributed(line).getIterator(), x, y);
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * 渲染统计信息（含每张图片的平均分配字节数，用于对比画布池开启前后的效果）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = rendered.get();
+        stats.put("rendered", count);
+        stats.put("allocationTracking", THREAD_MX_BEAN != null);
+        stats.put("allocatedBytes", allocated.get());
+        stats.put("allocatedBytesPerImage", count > 0 ? allocated.get() / count : 0);
+        stats.put("previewed", previewed.get());
+        stats.put("canvasPool", canvasPool.getStats());
+        return stats;
+    }
+
+    /**
+     * 当前线程累计分配的字节数（JVM 不支持时返回 -1）
+     */
+    private static long allocatedBytes() {
+        if (THREAD_MX_BEAN == null) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void recordAllocation(long allocatedBefore) {
+        rendered.incrementAndGet();
+        if (allocatedBefore >= 0) {
+            allocated.addAndGet(allocatedBytes() - allocatedBefore);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean initThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 预热模板：解码模板图片并编译渲染计划（保存模板后在后台调用）
+     */
+    public void warmUp(PhotoTemplate template) throws IOException {
+        File templateFile = resolveTemplateFile(template);
+        BufferedImage image = templateImageCache.get(template.getId(), templateFile);
+        renderPlanCache.get(template, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * 清除模板相关的渲染缓存
+     */
+    public void invalidate(Long templateId) {
+        templateImageCache.invalidate(templateId);
+        renderPlanCache.invalidate(templateId);
+    }
+
+    /**
+     * 解析模板图片文件（处理相对路径）
+     */
+    public File resolveTemplateFile(PhotoTemplate template) {
+        String imagePath = template.getImagePath();
+        File file = new File(imagePath);
+        if (!file.isAbsolute()) {
+            file = new File(System.getProperty("user.dir") + File.separator + imagePath);
+        }
+        if (!file.exists()) {
+            throw new RuntimeException("模板图片不存在");
+        }
+        return file;
+    }
+}
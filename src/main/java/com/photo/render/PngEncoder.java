@@ -0,0 +1,238 @@
+package com.photo.render;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * PNG 编码器
+ * - 输出 8 位 RGB / RGBA，可指定 deflate 压缩级别和行过滤方式
+ * - 直接写目标输出流，不经过 ImageIO 的临时文件缓存
+ */
+public final class PngEncoder {
+
+    /**
+     * 行过滤方式，ADAPTIVE 为逐行选择绝对值和最小的过滤方式
+     */
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+
+    private PngEncoder() {
+    }
+
+    /**
+     * 编码图片
+     *
+     * @param level  deflate 压缩级别（0-9）
+     * @param filter 行过滤方式
+     */
+    public static void write(BufferedImage image, int level, Filter filter, OutputStream out) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int bpp = alpha ? 4 : 3;
+        int rowBytes = width * bpp;
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8;                       // 位深
+        header[9] = (byte) (alpha ? 6 : 2);  // 颜色类型：6-RGBA，2-RGB
+        writeChunk(data, "IHDR", header, header.length);
+
+        Deflater deflater = new Deflater(Math.max(0, Math.min(9, level)));
+        if (filter != Filter.NONE) {
+            deflater.setStrategy(Deflater.FILTERED);
+        }
+        try {
+            IdatOutputStream idat = new IdatOutputStream(data);
+            DeflaterOutputStream zip = new DeflaterOutputStream(idat, deflater, IDAT_CHUNK_SIZE);
+
+            int[] pixels = new int[width];
+            byte[] previous = new byte[rowBytes];
+            byte[] current = new byte[rowBytes];
+            byte[][] candidates = new byte[5][rowBytes];
+            for (int y = 0; y < height; y++) {
+                readRow(image, y, pixels);
+                toBytes(pixels, current, alpha);
+
+                int type = filter == Filter.ADAPTIVE ? chooseFilter(current, previous, bpp, candidates) : filter.ordinal();
+                byte[] filtered = candidates[type];
+                if (filter != Filter.ADAPTIVE) {
+                    applyFilter(type, current, previous, bpp, filtered);
+                }
+                zip.write(type);
+                zip.write(filtered, 0, rowBytes);
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            zip.finish();
+            idat.flushChunk();
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    /**
+     * 读取一行像素（ARGB），整型像素格式直接取数据元素，其余格式走颜色模型转换
+     */
+    private static void readRow(BufferedImage image, int y, int[] pixels) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            image.getRaster().getDataElements(0, y, pixels.length, 1, pixels);
+        } else {
+            image.getRGB(0, y, pixels.length, 1, pixels, 0, pixels.length);
+        }
+    }
+
+    private static void toBytes(int[] pixels, byte[] row, boolean alpha) {
+        int i = 0;
+        for (int argb : pixels) {
+            row[i++] = (byte) (argb >> 16);
+            row[i++] = (byte) (argb >> 8);
+            row[i++] = (byte) argb;
+            if (alpha) {
+                row[i++] = (byte) (argb >>> 24);
+            }
+        }
+    }
+
+    private static int chooseFilter(byte[] current, byte[] previous, int bpp, byte[][] candidates) {
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            applyFilter(type, current, previous, bpp, candidates[type]);
+            long sum = 0;
+            for (byte b : candidates[type]) {
+                sum += Math.abs((int) b);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = type;
+            }
+        }
+        return best;
+    }
+
+    private static void applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] out) {
+        int length = cur.length;
+        switch (type) {
+            case 0:
+                System.arraycopy(cur, 0, out, 0, length);
+                break;
+            case 1:
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xff : 0;
+                    out[i] = (byte) ((cur[i] & 0xff) - left);
+                }
+                break;
+            case 2:
+                for (int i = 0; i < length; i++) {
+                    out[i] = (byte) ((cur[i] & 0xff) - (prev[i] & 0xff));
+                }
+                break;
+            case 3:
+                for (int i = 0; i < length; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xff : 0;
+                    out[i] = (byte) ((cur[i] & 0xff) - ((left + (prev[i] & 0xff)) >> 1));
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xff : 0;
+                    int b = prev[i] & 0xff;
+                    int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+                    out[i] = (byte) ((cur[i] & 0xff) - paeth(a, b, c));
+                }
+                break;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] body, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(body, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(body, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) (value >>> 24);
+        buf[offset + 1] = (byte) (value >>> 16);
+        buf[offset + 2] = (byte) (value >>> 8);
+        buf[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 把压缩后的数据切分为 IDAT 块
+     */
+    private static final class IdatOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count;
+
+        private IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
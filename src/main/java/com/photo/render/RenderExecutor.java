@@ -0,0 +1,76 @@
+package com.photo.render;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 渲染线程池
+ * - 与 Tomcat 请求线程分离，固定线程数、有界队列
+ * - 单个批次最多同时占用 batch-parallelism 个任务，避免一个大批次占满所有线程
+ * - 队列满时由提交线程自己执行任务，形成全局背压
+ */
+@Component
+public class RenderExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final int batchParallelism;
+
+    public RenderExecutor(@Value("${render.worker.threads:0}") int threads,
+                          @Value("${render.worker.queue-capacity:256}") int queueCapacity,
+                          @Value("${render.worker.batch-parallelism:0}") int batchParallelism) {
+        // 未配置时：线程数取 CPU 核数，单批次并行度取 线程数-1（至少为 1）
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.batchParallelism = batchParallelism > 0 ? batchParallelism : Math.max(1, poolSize - 1);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "render-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 创建有序批次，结果按提交顺序回调
+     */
+    public <T, R> OrderedBatch<T, R> newBatch(Function<? super T, ? extends R> task, OrderedBatch.Listener<? super R> listener) {
+        return new OrderedBatch<>(executor, task, listener, batchParallelism);
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 线程池统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("batchParallelism", batchParallelism);
+        stats.put("completedTasks", executor.getCompletedTaskCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
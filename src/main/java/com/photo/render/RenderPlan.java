@@ -0,0 +1,174 @@
+package com.photo.render;
+
+import com.photo.entity.PhotoTemplate;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * 模板渲染计划（不可变）
+ * 由模板配置和模板图片尺寸预先编译得到：像素坐标、颜色、字体组（主字体及后备字体）及字体度量，
+ * 渲染时只需排版和绘制文字
+ */
+public final class RenderPlan {
+
+    private final Long templateId;
+    private final LocalDateTime templateUpdateTime;
+    private final int imageWidth;
+    private final int imageHeight;
+
+    private final int textX;
+    private final int textY;
+    private final int textWidth;
+    private final int textHeight;
+
+    private final Color coverColor;
+    private final Color fontColor;
+    private final FontSet fontSet;
+    private final Font font;
+    private final FontMetrics fontMetrics;
+    private final int lineHeight;
+    private final int ascent;
+
+    private RenderPlan(PhotoTemplate template, int imageWidth, int imageHeight, FontRegistry fontRegistry) {
+        this.templateId = template.getId();
+        this.templateUpdateTime = template.getUpdateTime();
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+
+        // 将相对坐标转换为绝对坐标
+        this.textX = toPixels(template.getTextX(), imageWidth);
+        this.textY = toPixels(template.getTextY(), imageHeight);
+        this.textWidth = toPixels(template.getTextWidth(), imageWidth);
+        this.textHeight = toPixels(template.getTextHeight(), imageHeight);
+
+        // 覆盖颜色解析失败时退回白色
+        String cover = template.getCoverColor() != null ? template.getCoverColor() : "#ffffff";
+        Color decodedCover;
+        try {
+            decodedCover = Color.decode(cover);
+        } catch (NumberFormatException e) {
+            decodedCover = Color.WHITE;
+        }
+        this.coverColor = decodedCover;
+        this.fontColor = Color.decode(template.getFontColor());
+
+        this.fontSet = fontRegistry.fontSet(template.getFontSize());
+        this.font = fontSet.getFont(0);
+        this.fontMetrics = fontSet.getMetrics(0);
+        this.lineHeight = fontMetrics.getHeight();
+        this.ascent = fontMetrics.getAscent();
+    }
+
+    /**
+     * 根据模板配置和模板图片尺寸编译渲染计划
+     */
+    public static RenderPlan compile(PhotoTemplate template, int imageWidth, int imageHeight, FontRegistry fontRegistry) {
+        return new RenderPlan(template, imageWidth, imageHeight, fontRegistry);
+    }
+
+    /**
+     * 判断渲染计划是否仍对应当前模板版本
+     */
+    public boolean matches(PhotoTemplate template, int imageWidth, int imageHeight) {
+        return Objects.equals(templateId, template.getId())
+                && Objects.equals(templateUpdateTime, template.getUpdateTime())
+                && this.imageWidth == imageWidth
+                && this.imageHeight == imageHeight;
+    }
+
+    /**
+     * 为绘制设置统一的渲染参数（字体度量与这些参数相关，编译和绘制必须一致）
+     */
+    public static void applyRenderingHints(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    /**
+     * 预览绘制提示：关闭图形抗锯齿、优先速度，文字抗锯齿保持开启（字体度量与正式渲染一致）
+     */
+    public static void applyPreviewRenderingHints(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    private static int toPixels(BigDecimal ratio, int size) {
+        double value = ratio != null ? ratio.doubleValue() : 0D;
+        return (int) Math.round(value * size);
+    }
+
+    /**
+     * 在与绘制相同的渲染参数下测量字体
+     */
+    static FontMetrics measure(Font font) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scratch.createGraphics();
+        try {
+            applyRenderingHints(g2d);
+            return g2d.getFontMetrics(font);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public int getTextX() {
+        return textX;
+    }
+
+    public int getTextY() {
+        return textY;
+    }
+
+    public int getTextWidth() {
+        return textWidth;
+    }
+
+    public int getTextHeight() {
+        return textHeight;
+    }
+
+    public Color getCoverColor() {
+        return coverColor;
+    }
+
+    public Color getFontColor() {
+        return fontColor;
+    }
+
+    public FontSet getFontSet() {
+        return fontSet;
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    public FontMetrics getFontMetrics() {
+        return fontMetrics;
+    }
+
+    public int getLineHeight() {
+        return lineHeight;
+    }
+
+    public int getAscent() {
+        return ascent;
+    }
+}
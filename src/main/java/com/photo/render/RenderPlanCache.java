@@ -0,0 +1,67 @@
+package com.photo.render;
+
+import com.photo.entity.PhotoTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 渲染计划缓存
+ * 每个模板版本（模板更新时间 + 模板图片尺寸）只编译一次
+ */
+@Component
+public class RenderPlanCache {
+
+    @Autowired
+    private FontRegistry fontRegistry;
+
+    // templateId -> 渲染计划
+    private final Map<Long, RenderPlan> plans = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong compiles = new AtomicLong();
+
+    /**
+     * 获取渲染计划，版本不一致时重新编译
+     */
+    public RenderPlan get(PhotoTemplate template, int imageWidth, int imageHeight) {
+        RenderPlan plan = plans.get(template.getId());
+        if (plan != null && plan.matches(template, imageWidth, imageHeight)) {
+            hits.incrementAndGet();
+            return plan;
+        }
+        plan = compile(template, imageWidth, imageHeight);
+        compiles.incrementAndGet();
+        plans.put(template.getId(), plan);
+        return plan;
+    }
+
+    /**
+     * 编译渲染计划但不放入缓存（预览尚未保存的模板配置）
+     */
+    public RenderPlan compile(PhotoTemplate template, int imageWidth, int imageHeight) {
+        return RenderPlan.compile(template, imageWidth, imageHeight, fontRegistry);
+    }
+
+    /**
+     * 移除指定模板的渲染计划
+     */
+    public void invalidate(Long templateId) {
+        plans.remove(templateId);
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", plans.size());
+        stats.put("hits", hits.get());
+        stats.put("compiles", compiles.get());
+        return stats;
+    }
+}
@@ -0,0 +1,396 @@
+package com.photo.render;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模板图片解码缓存
+ * - 以 模板ID + 文件最后修改时间 作为版本，文件被替换后自动失效
+ * - 按像素字节数（宽 × 高 × 每像素字节数）做 LRU 淘汰，而不是按条目数
+ * - 解码后统一转换为整型像素格式（INT_RGB / INT_ARGB），便于画布整块复制
+ * - 缓存中的图片只读，渲染时由 {@link CanvasPool} 复制到画布上
+ * - 预览用的缩小图按 模板ID + 尺寸 缓存（未保存的新模板按文件路径），与原图共用字节预算，随模板一起失效
+ * - 同一条目并发未命中时只由一个线程解码或缩小，其余线程等待它的结果
+ */
+@Component
+public class TemplateImageCache {
+
+    private final long maxBytes;
+
+    // templateId（原图）或 ScaledKey（缩小图） -> 缓存条目（访问顺序，用于 LRU）
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    // 进行中的加载（缓存键 + 文件版本 -> 结果），并发未命中同一条目时只解码一次，其余线程等待
+    private final Map<LoadKey, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadWaits = new AtomicLong();
+
+    public TemplateImageCache(@Value("${render.template-cache.max-bytes:268435456}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取模板图片（只读，调用方不得在返回的图片上绘制）
+     */
+    public BufferedImage get(Long templateId, File templateFile) throws IOException {
+        long lastModified = templateFile.lastModified();
+        Entry entry = lookup(templateId, lastModified);
+        if (entry == null) {
+            // 解码放在锁外，避免大图解码阻塞其他模板的命中
+            entry = load(templateId, lastModified, () -> {
+                BufferedImage image = decode(templateFile);
+                return new Entry(image, lastModified, sizeOf(image));
+            });
+        }
+        return entry.image;
+    }
+
+    /**
+     * 获取缩小后的模板图片（长边不超过 maxSize，只读；原图不超过时直接返回原图）
+     *
+     * @param templateId 已保存模板的ID；为空时（新模板尚未保存）直接解码模板文件，缩小结果按文件路径缓存
+     */
+    public Scaled getScaled(Long templateId, File templateFile, int maxSize) throws IOException {
+        long lastModified = templateFile.lastModified();
+        ScaledKey key = new ScaledKey(templateId != null ? templateId : templateFile.getAbsolutePath(), maxSize);
+        Entry entry = lookup(key, lastModified);
+        if (entry == null) {
+            entry = load(key, lastModified, () -> {
+                BufferedImage source = templateId != null ? get(templateId, templateFile) : decode(templateFile);
+                int longest = Math.max(source.getWidth(), source.getHeight());
+                if (longest <= maxSize) {
+                    // 直接使用原图，不单独缓存
+                    return new Entry(new Scaled(source, source.getWidth(), source.getHeight()), lastModified, 0);
+                }
+                double ratio = (double) maxSize / longest;
+                int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+                int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+                Scaled scaled = new Scaled(downscale(source, width, height), source.getWidth(), source.getHeight());
+                return new Entry(scaled, lastModified, sizeOf(scaled.image));
+            });
+        }
+        return entry.scaled;
+    }
+
+    /**
+     * 移除指定模板的缓存，包括各尺寸的缩小图（模板删除或图片替换时调用）
+     * 正在进行的加载结果不再放入缓存，之后的请求重新加载
+     */
+    public synchronized void invalidate(Long templateId) {
+        Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, Entry> entry = it.next();
+            if (belongsTo(entry.getKey(), templateId)) {
+                it.remove();
+                currentBytes -= entry.getValue().bytes;
+            }
+        }
+        loading.keySet().removeIf(loadKey -> belongsTo(loadKey.key, templateId));
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", currentBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("loading", loading.size());
+        stats.put("loadWaits", loadWaits.get());
+        return stats;
+    }
+
+    private synchronized Entry lookup(Object key, long lastModified) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 加载缓存条目：同一版本同时只有一个线程执行 loader，其余线程等待它的结果
+     */
+    private Entry load(Object key, long lastModified, Loader loader) throws IOException {
+        LoadKey loadKey = new LoadKey(key, lastModified);
+        CompletableFuture<Entry> flight = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(loadKey, flight);
+        if (existing != null) {
+            loadWaits.incrementAndGet();
+            return await(existing);
+        }
+        try {
+            // 上一个加载线程可能刚放入缓存并结束
+            Entry entry = lookup(key, lastModified);
+            if (entry == null) {
+                misses.incrementAndGet();
+                entry = loader.load();
+                putIfCurrent(key, loadKey, flight, entry);
+            }
+            flight.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(loadKey, flight);
+        }
+    }
+
+    /**
+     * 加载期间没有被 invalidate 时才放入缓存
+     */
+    private synchronized void putIfCurrent(Object key, LoadKey loadKey, CompletableFuture<Entry> flight, Entry entry) {
+        if (entry.bytes > 0 && loading.get(loadKey) == flight) {
+            put(key, entry);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待模板图片加载时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static BufferedImage decode(File templateFile) throws IOException {
+        BufferedImage decoded = ImageIO.read(templateFile);
+        if (decoded == null) {
+            throw new IOException("无法解析模板图片：" + templateFile.getName());
+        }
+        return normalize(decoded);
+    }
+
+    /**
+     * 缓存键是否属于该模板（原图以模板ID为键，缩小图的 ScaledKey 中记录模板ID）
+     */
+    private static boolean belongsTo(Object key, Long templateId) {
+        if (key instanceof ScaledKey) {
+            key = ((ScaledKey) key).source;
+        }
+        return templateId.equals(key);
+    }
+
+    private synchronized void put(Object key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        if (old != null) {
+            currentBytes -= old.bytes;
+        }
+        currentBytes += entry.bytes;
+
+        // 超出预算时从最久未使用的条目开始淘汰（单张超预算的图片不缓存）
+        Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            currentBytes -= eldest.bytes;
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 转换为整型像素格式，按是否有透明通道选择 INT_ARGB 或 INT_RGB
+     */
+    private static BufferedImage normalize(BufferedImage source) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (source.getType() == type) {
+            return source;
+        }
+        BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), type);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * 逐级减半缩小（每次双线性插值最多缩小一半，避免一步缩小过多产生锯齿）
+     */
+    private static BufferedImage downscale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, source.getType());
+            Graphics2D g2d = next.createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, w, h, null);
+            g2d.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    /**
+     * 复制图片像素（Raster 级别整块复制，不经过 Graphics 绘制）
+     */
+    public static BufferedImage copyOf(BufferedImage source) {
+        ColorModel cm = source.getColorModel();
+        return new BufferedImage(cm, source.copyData(null), cm.isAlphaPremultiplied(), null);
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        // 整型像素格式每像素 4 字节
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * 缩小后的模板图片及原图尺寸（排版按原图尺寸计算）
+     */
+    public static final class Scaled {
+        private final BufferedImage image;
+        private final int sourceWidth;
+        private final int sourceHeight;
+
+        private Scaled(BufferedImage image, int sourceWidth, int sourceHeight) {
+            this.image = image;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+
+        /**
+         * 缩放比例（缩小图宽度 / 原图宽度）
+         */
+        public double getScale() {
+            return (double) image.getWidth() / sourceWidth;
+        }
+    }
+
+    private static final class ScaledKey {
+        // 模板ID，新模板尚未保存时为文件路径
+        private final Object source;
+        private final int maxSize;
+
+        private ScaledKey(Object source, int maxSize) {
+            this.source = source;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ScaledKey)) {
+                return false;
+            }
+            ScaledKey other = (ScaledKey) o;
+            return maxSize == other.maxSize && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return source.hashCode() * 31 + maxSize;
+        }
+    }
+
+    /**
+     * 进行中的加载：缓存键 + 模板文件版本
+     */
+    private static final class LoadKey {
+        private final Object key;
+        private final long lastModified;
+
+        private LoadKey(Object key, long lastModified) {
+            this.key = key;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LoadKey)) {
+                return false;
+            }
+            LoadKey other = (LoadKey) o;
+            return lastModified == other.lastModified && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + Long.hashCode(lastModified);
+        }
+    }
+
+    private interface Loader {
+        Entry load() throws IOException;
+    }
+
+    private static final class Entry {
+        private final BufferedImage image;
+        private final Scaled scaled;
+        private final long lastModified;
+        private final long bytes;
+
+        private Entry(BufferedImage image, long lastModified, long bytes) {
+            this.image = image;
+            this.scaled = null;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+
+        private Entry(Scaled scaled, long lastModified, long bytes) {
+            this.image = scaled.image;
+            this.scaled = scaled;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.photo.service;
+
+import com.photo.job.BatchJob;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 批量生成任务服务接口
+ */
+public interface BatchJobService {
+
+    /**
+     * 提交批量生成任务，立即返回任务
+     */
+    BatchJob submit(List<String> textList, Long templateId);
+
+    /**
+     * 提交Excel批量生成任务：上传文件先落盘，任务线程流式解析并边解析边渲染
+     */
+    BatchJob submitExcel(MultipartFile file, Long templateId) throws IOException;
+
+    /**
+     * 同步批量生成（在请求线程中等待渲染完成），只接受不超过 render.job.sync-max-texts 条的小批量，
+     * 超出时抛出 {@link com.photo.common.BatchTooLargeException}，调用方应改用任务接口；存在失败条目时抛出异常
+     */
+    List<String> generateSync(List<String> textList, Long templateId);
+
+    /**
+     * 同步读取Excel批量生成（先只解析计数，条数限制同 generateSync）
+     */
+    List<String> generateExcelSync(MultipartFile file, Long templateId) throws Exception;
+
+    /**
+     * 获取当前用户的任务，不存在或不属于该用户时返回 null
+     */
+    BatchJob getJob(String jobId, String userId);
+}
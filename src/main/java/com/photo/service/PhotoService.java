@@ -2,9 +2,12 @@ package com.photo.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.photo.entity.PhotoTemplate;
+import com.photo.entity.UsageRecord;
+import com.photo.render.OrderedBatch;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.util.List;
 
 /**
@@ -18,9 +21,41 @@ public interface PhotoService extends IService<PhotoTemplate> {
     String generatePhoto(String text, Long templateId);
 
     /**
-     * 批量生成图片
+     * 单次生成图片并直接写入响应体（不经过磁盘）
+     *
+     * @param persist 是否同时保存到上传目录，保存成功时路径通过响应头 X-Image-Path 返回
      */
-    List<String> batchGeneratePhotos(List<String> textList, Long templateId);
+    void generatePhotoToResponse(String text, Long templateId, boolean persist, HttpServletResponse response);
+
+    /**
+     * 获取模板配置（读穿缓存，返回对象只读）
+     */
+    PhotoTemplate getTemplate(Long templateId);
+
+    /**
+     * 批量生成图片（按输入顺序逐条回调，单条失败不中断批次）
+     */
+    List<String> batchGeneratePhotos(List<String> textList, Long templateId, OrderedBatch.Listener<String> listener);
+
+    /**
+     * 从Excel第一列流式读取文字批量生成图片（边解析边渲染，按顺序逐条回调）
+     */
+    List<String> batchGenerateFromExcel(File excelFile, Long templateId, OrderedBatch.Listener<String> listener);
+
+    /**
+     * 并行渲染并以 ZIP 流直接输出（图片不落盘），结束后记录一次使用明细
+     */
+    void renderZip(List<String> textList, Long templateId, HttpServletResponse response);
+
+    /**
+     * 从Excel第一列读取文字，渲染并以 ZIP 流直接输出（图片不落盘）
+     */
+    void renderZipFromExcel(MultipartFile file, Long templateId, HttpServletResponse response);
+
+    /**
+     * 还原批量使用记录的完整文字和图片路径（列表查询只返回摘要）
+     */
+    void expandRecords(List<UsageRecord> records);
 
     /**
      * 导出图片
@@ -42,6 +77,24 @@ public interface PhotoService extends IService<PhotoTemplate> {
      */
     PhotoTemplate createTemplate(PhotoTemplate template, MultipartFile file);
 
+    /**
+     * 渲染模板预览（低分辨率 PNG，不保存文件、不记录使用明细）
+     *
+     * @param layout  模板配置，可以是尚未保存的修改；有 id 时未填写的字段取已保存的模板
+     * @param maxSize 预览图长边上限（像素）
+     */
+    byte[] renderPreview(PhotoTemplate layout, String text, Integer maxSize);
+
+    /**
+     * 删除模板（同时清理缓存）
+     */
+    boolean deleteTemplate(Long templateId);
+
+    /**
+     * 用户的模板数（缓存一段时间，本节点新增或删除模板时立即失效）
+     */
+    long countTemplates(String userId);
+
     /**
      * 获取启用的模板列表
      */
@@ -0,0 +1,35 @@
+package com.photo.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用量统计服务接口（基于日汇总表，不扫描使用记录明细）
+ */
+public interface UsageStatService {
+
+    /**
+     * 用户今日、本月、累计生成数量
+     */
+    Map<String, Object> getUserStats(String userId);
+
+    /**
+     * 全部用户今日、累计生成数量
+     */
+    Map<String, Object> getOverallStats();
+
+    /**
+     * 最近 days 天的模板使用排行
+     */
+    List<Map<String, Object>> getTemplateRanking(int days, int limit);
+
+    /**
+     * 使用记录条数（近似值：来自日汇总并缓存一段时间，userId 为空时统计全部用户）
+     */
+    long countRecords(String userId);
+
+    /**
+     * 根据使用记录重建日汇总，返回汇总行数
+     */
+    int rebuild();
+}
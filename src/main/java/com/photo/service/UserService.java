@@ -3,6 +3,7 @@ package com.photo.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.photo.entity.User;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 /**
@@ -16,9 +17,14 @@ public interface UserService extends IService<User> {
     boolean register(String username, String password, String email, String phone);
 
     /**
-     * 用户登录
+     * 校验用户名和密码，返回登录的用户
      */
-    String login(String username, String password, HttpSession session);
+    User authenticate(String username, String password);
+
+    /**
+     * 登记登录并返回 token；会话登记依赖 HttpSession 时才创建 Session
+     */
+    String login(User user, HttpServletRequest request);
 
     /**
      * 用户登出
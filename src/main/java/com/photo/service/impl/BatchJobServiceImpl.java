@@ -0,0 +1,224 @@
+package com.photo.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import com.photo.common.BatchTooLargeException;
+import com.photo.entity.User;
+import com.photo.job.BatchJob;
+import com.photo.render.OrderedBatch;
+import com.photo.service.BatchJobService;
+import com.photo.service.PhotoService;
+import com.photo.util.ExcelTextReader;
+import com.photo.util.UserContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量生成任务服务实现类
+ * - 任务在后台线程执行，与 HTTP 连接解耦，客户端断开不影响任务
+ * - 已结束的任务保留一段时间供查询，之后清理
+ */
+@Service
+public class BatchJobServiceImpl implements BatchJobService {
+
+    @Autowired
+    private PhotoService photoService;
+
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor jobExecutor;
+    private final long retentionMinutes;
+    private final int syncMaxTexts;
+
+    public BatchJobServiceImpl(@Value("${render.job.threads:2}") int threads,
+                               @Value("${render.job.queue-capacity:32}") int queueCapacity,
+                               @Value("${render.job.retention-minutes:60}") long retentionMinutes,
+                               @Value("${render.job.sync-max-texts:50}") int syncMaxTexts) {
+        this.retentionMinutes = retentionMinutes;
+        this.syncMaxTexts = Math.max(0, syncMaxTexts);
+        AtomicInteger counter = new AtomicInteger();
+        this.jobExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "batch-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public BatchJob submit(List<String> textList, Long templateId) {
+        if (photoService.getTemplate(templateId) == null) {
+            throw new RuntimeException("模板不存在");
+        }
+        int validCount = countTexts(textList);
+        return execute(templateId, job -> {
+            job.setTotal(validCount);
+            photoService.batchGeneratePhotos(textList, templateId, job);
+        });
+    }
+
+    @Override
+    public BatchJob submitExcel(MultipartFile file, Long templateId) throws IOException {
+        if (photoService.getTemplate(templateId) == null) {
+            throw new RuntimeException("模板不存在");
+        }
+        // 请求结束后上传的临时文件会被清理，先转存到任务自己的临时文件
+        Path spooled = Files.createTempFile("batch-excel-", ".xlsx");
+        try {
+            file.transferTo(spooled.toFile());
+            return execute(templateId, job -> {
+                try {
+                    photoService.batchGenerateFromExcel(spooled.toFile(), templateId, job);
+                } finally {
+                    Files.deleteIfExists(spooled);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> generateSync(List<String> textList, Long templateId) {
+        checkSyncSize(countTexts(textList));
+        SyncResult result = new SyncResult();
+        photoService.batchGeneratePhotos(textList, templateId, result);
+        return result.paths();
+    }
+
+    @Override
+    public List<String> generateExcelSync(MultipartFile file, Long templateId) throws Exception {
+        if (photoService.getTemplate(templateId) == null) {
+            throw new RuntimeException("模板不存在");
+        }
+        Path spooled = Files.createTempFile("batch-excel-", ".xlsx");
+        try {
+            file.transferTo(spooled.toFile());
+            // 先只解析计数（远比渲染便宜），超出上限时立即停止解析，不渲染任何图片
+            checkSyncSize(ExcelTextReader.countFirstColumn(spooled.toFile(), syncMaxTexts));
+            SyncResult result = new SyncResult();
+            photoService.batchGenerateFromExcel(spooled.toFile(), templateId, result);
+            return result.paths();
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    @Override
+    public BatchJob getJob(String jobId, String userId) {
+        purgeExpired();
+        BatchJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            return null;
+        }
+        return job;
+    }
+
+    private void checkSyncSize(int count) {
+        if (count > syncMaxTexts) {
+            throw new BatchTooLargeException("超过 " + syncMaxTexts + " 条请使用批量任务接口（/photo/batch-jobs）");
+        }
+    }
+
+    private static int countTexts(List<String> textList) {
+        int count = 0;
+        for (String text : textList) {
+            if (text != null && !text.trim().isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 创建任务并放入后台线程执行，任务线程中恢复提交者的用户上下文
+     */
+    private BatchJob execute(Long templateId, JobBody body) {
+        purgeExpired();
+        User user = UserContext.getUser();
+        BatchJob job = new BatchJob(IdUtil.simpleUUID(), user.getId(), templateId);
+        jobs.put(job.getId(), job);
+        try {
+            jobExecutor.execute(() -> run(job, user, body));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new RuntimeException("当前批量任务过多，请稍后再试");
+        }
+        return job;
+    }
+
+    private void run(BatchJob job, User user, JobBody body) {
+        UserContext.setUser(user);
+        job.start();
+        try {
+            body.run(job);
+        } catch (Exception e) {
+            job.fail(e.getMessage());
+        } finally {
+            job.finish();
+            UserContext.clear();
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已结束任务
+     */
+    private void purgeExpired() {
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> {
+            LocalDateTime finishTime = job.getFinishTime();
+            return finishTime != null && finishTime.isBefore(deadline);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * 同步生成的结果收集：与原同步接口一致，任一条失败时整体报错
+     * 失败回调中直接抛出，中断批次并取消未完成的渲染，不保存使用记录（已写出的图片由保留期清理回收）
+     */
+    private static final class SyncResult implements OrderedBatch.Listener<String> {
+        private final List<String> paths = new ArrayList<>();
+
+        @Override
+        public void onSuccess(int index, String path) {
+            paths.add(path);
+        }
+
+        @Override
+        public void onFailure(int index, Throwable error) {
+            throw new RuntimeException(error.getMessage(), error);
+        }
+
+        private List<String> paths() {
+            return paths;
+        }
+    }
+
+    /**
+     * 任务内容
+     */
+    private interface JobBody {
+        void run(BatchJob job) throws Exception;
+    }
+}
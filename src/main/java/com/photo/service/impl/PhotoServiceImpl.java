@@ -4,46 +4,123 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.photo.entity.BatchPayload;
 import com.photo.entity.PhotoTemplate;
 import com.photo.entity.UsageRecord;
+import com.photo.job.UsageRecordWriter;
 import com.photo.mapper.PhotoTemplateMapper;
 import com.photo.mapper.UsageRecordMapper;
+import com.photo.render.ImageChecksums;
+import com.photo.render.ImageDeduplicator;
+import com.photo.render.ImageEncoder;
+import com.photo.render.OrderedBatch;
+import com.photo.render.OutputSettings;
+import com.photo.render.PhotoRenderer;
+import com.photo.render.RenderExecutor;
+import com.photo.render.PngEncoder;
 import com.photo.service.PhotoService;
+import com.photo.store.ImageRegion;
+import com.photo.store.ImageStore;
+import com.photo.util.CountCache;
+import com.photo.util.ExcelTextReader;
+import com.photo.util.ImageFileSender;
+import com.photo.util.StoredZipWriter;
 import com.photo.util.UserContext;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletResponse;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.RenderingHints;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
  * 图片服务实现类
  */
+@Slf4j
 @Service
 public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemplate> implements PhotoService {
 
     @Autowired
     private UsageRecordMapper usageRecordMapper;
 
-    @Value("${file.upload-path}")
-    private String uploadPath;
+    @Autowired
+    private UsageRecordWriter usageRecordWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PhotoRenderer photoRenderer;
+
+    @Autowired
+    private RenderExecutor renderExecutor;
+
+    @Autowired
+    private ImageEncoder imageEncoder;
+
+    @Autowired
+    private ImageDeduplicator imageDeduplicator;
+
+    @Autowired
+    private ImageChecksums imageChecksums;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    // 批量记录列表中文字摘要的最大长度
+    private static final int TEXT_SUMMARY_LENGTH = 200;
+
+    // 预览尺寸按该步长向下取整，减少缩小图缓存的尺寸种类
+    private static final int PREVIEW_SIZE_STEP = 64;
+
+    // 预览只求快：最低压缩级别 + 最便宜的行过滤
+    private static final OutputSettings PREVIEW_SETTINGS = OutputSettings.png(1, PngEncoder.Filter.SUB);
+
+    // 模板配置缓存（templateId -> 模板），只读；本节点修改或删除模板时立即失效，
+    // 其他节点上的修改要等条目超过 render.template-cache.config-ttl-seconds 后重新读取才生效
+    private final Map<Long, CachedTemplate> templateCache = new ConcurrentHashMap<>();
+
+    // templateId -> 失效次数，读库期间发生过失效时不把读到的旧模板放入缓存
+    private final Map<Long, Long> templateVersions = new ConcurrentHashMap<>();
+
+    // 模板总数缓存（userId -> 模板数），游标分页附带总数时使用；本节点新增或删除模板时立即失效
+    private final CountCache templateCounts = new CountCache(TimeUnit.SECONDS.toMillis(60), 10000);
+
+    // 模板预热线程（保存模板后在后台解码图片、编译渲染计划）
+    private final ExecutorService templateWarmUpExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "template-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Value("${file.export-path}")
     private String exportPath;
@@ -51,144 +128,201 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
     @Value("${file.template-path}")
     private String templatePath;
 
+    @Value("${render.preview.max-size:1024}")
+    private int previewMaxSize;
+
+    @Value("${render.template-cache.config-ttl-seconds:30}")
+    private long templateTtlSeconds;
+
     @Override
     public String generatePhoto(String text, Long templateId) {
-        String imagePath = generatePhotoInternal(text, templateId);
-        // 获取模板信息用于记录
-        PhotoTemplate template = getById(templateId);
-        String templateName = template != null ? template.getTemplateName() : "";
+        PhotoTemplate template = requireTemplate(templateId);
+        String imagePath = generatePhotoInternal(text, template, null);
         // 记录使用明细
-        saveUsageRecord(1, 1, templateId, templateName, text, imagePath);
+        saveUsageRecord(1, 1, templateId, template.getTemplateName(), text, imagePath);
         return imagePath;
     }
 
+    @Override
+    public void generatePhotoToResponse(String text, Long templateId, boolean persist, HttpServletResponse response) {
+        PhotoTemplate template = requireTemplate(templateId);
+        OutputSettings settings = imageEncoder.resolve(template);
+
+        String fileName = null;
+        String imagePath = null;
+        if (persist) {
+            fileName = imageDeduplicator.isEnabled()
+                    ? imageDeduplicator.fileName(template, photoRenderer.resolveTemplateFile(template), settings, text)
+                    : IdUtil.simpleUUID() + settings.getExtension();
+            imagePath = "/uploads/" + fileName;
+        }
+
+        try {
+            EncodedImage image = null;
+            ImageRegion existing = null;
+            if (fileName != null && imageDeduplicator.isEnabled()) {
+                // 渲染放在 getOrCreate 中：相同请求并发时只渲染一次；命中（含等待其他请求生成完）时
+                // 由去重器刷新图片修改时间并计入命中统计，这里直接从图片存储读出
+                EncodedImage[] rendered = new EncodedImage[1];
+                try {
+                    imageDeduplicator.getOrCreate(fileName, name -> {
+                        rendered[0] = encodeImage(template, settings, text);
+                        imageStore.put(name, rendered[0].data, rendered[0].crc);
+                    });
+                    if (rendered[0] == null) {
+                        existing = imageStore.find(fileName);
+                        if (existing == null) {
+                            // 命中后图片刚被清理，下面重新渲染，不带保存地址
+                            imagePath = null;
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("保存图片失败，{}：{}", fileName, e.getMessage());
+                    imagePath = null;
+                }
+                image = rendered[0];
+            } else if (fileName != null) {
+                image = encodeImage(template, settings, text);
+                // 写响应前先保存（内存数据，耗时远小于渲染），X-Image-Path 和使用记录只带保存成功的地址
+                if (!store(fileName, image)) {
+                    imagePath = null;
+                }
+            }
+
+            if (existing != null) {
+                writeImageHeaders(response, settings, imagePath);
+                response.setContentLengthLong(existing.getLength());
+                existing.transferTo(response.getOutputStream());
+            } else {
+                // 先编码到内存再写出：画布在写响应前就归还画布池，不受慢客户端影响；渲染失败时响应尚未提交
+                if (image == null) {
+                    image = encodeImage(template, settings, text);
+                }
+                writeImageHeaders(response, settings, imagePath);
+                response.setContentLength(image.data.length);
+                response.getOutputStream().write(image.data);
+            }
+            response.flushBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException("写出图片失败：" + e.getMessage());
+        }
+        saveUsageRecord(1, 1, templateId, template.getTemplateName(), text, imagePath);
+    }
+
     /**
-     * 获取文件的绝对路径
+     * 直出图片的响应头（生成结果每次不同，不允许缓存）
      */
-    private String getAbsolutePath(String relativePath) {
-        if (new File(relativePath).isAbsolute()) {
-            return relativePath;
+    private static void writeImageHeaders(HttpServletResponse response, OutputSettings settings, String imagePath) {
+        response.setContentType(settings.getContentType());
+        response.setHeader("Cache-Control", "no-store");
+        if (imagePath != null) {
+            response.setHeader("X-Image-Path", imagePath);
         }
-        String projectRoot = System.getProperty("user.dir");
-        return projectRoot + File.separator + relativePath;
     }
 
     /**
-     * 内部方法：生成图片（不保存记录）
+     * 保存直出的图片（未开启去重时），失败时只记录日志（图片照常返回，只是没有保存地址）
      */
-    private String generatePhotoInternal(String text, Long templateId) {
+    private boolean store(String fileName, EncodedImage image) {
         try {
-            // 获取模板
-            PhotoTemplate template = getById(templateId);
-            if (template == null) {
-                throw new RuntimeException("模板不存在");
-            }
-
-            // 读取模板图片（处理相对路径）
-            String absolutePath = getAbsolutePath(template.getImagePath());
-            File templateFile = new File(absolutePath);
-            if (!templateFile.exists()) {
-                throw new RuntimeException("模板图片不存在");
-            }
+            imageStore.put(fileName, image.data, image.crc);
+            return true;
+        } catch (IOException e) {
+            log.warn("保存图片失败，{}：{}", fileName, e.getMessage());
+            return false;
+        }
+    }
 
-            BufferedImage image = ImageIO.read(templateFile);
-            Graphics2D g2d = image.createGraphics();
+    @Override
+    public PhotoTemplate getTemplate(Long templateId) {
+        if (templateId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedTemplate cached = templateCache.get(templateId);
+        if (cached != null && now - cached.loadedAt < TimeUnit.SECONDS.toMillis(templateTtlSeconds)) {
+            return cached.template;
+        }
+        long version = templateVersions.getOrDefault(templateId, 0L);
+        PhotoTemplate template = getById(templateId);
+        if (template == null) {
+            templateCache.remove(templateId);
+            return null;
+        }
+        // 读库期间模板被修改（evictTemplate 已执行）时不缓存，下次重新读取
+        templateCache.compute(templateId, (id, old) ->
+                templateVersions.getOrDefault(id, 0L) == version ? new CachedTemplate(template, now) : old);
+        return template;
+    }
 
-            // 设置抗锯齿
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    /**
+     * 获取模板，不存在时抛出异常
+     */
+    private PhotoTemplate requireTemplate(Long templateId) {
+        PhotoTemplate template = getTemplate(templateId);
+        if (template == null) {
+            throw new RuntimeException("模板不存在");
+        }
+        return template;
+    }
 
-            // 将相对坐标转换为绝对坐标
-            int imgWidth = image.getWidth();
-            int imgHeight = image.getHeight();
-            
-            // 处理 BigDecimal 类型的坐标
-            BigDecimal textXBD = template.getTextX() != null ? template.getTextX() : BigDecimal.ZERO;
-            BigDecimal textYBD = template.getTextY() != null ? template.getTextY() : BigDecimal.ZERO;
-            BigDecimal textWidthBD = template.getTextWidth() != null ? template.getTextWidth() : BigDecimal.ZERO;
-            BigDecimal textHeightBD = template.getTextHeight() != null ? template.getTextHeight() : BigDecimal.ZERO;
-            
-            int textX = (int) Math.round(textXBD.doubleValue() * imgWidth);
-            int textY = (int) Math.round(textYBD.doubleValue() * imgHeight);
-            int textWidth = (int) Math.round(textWidthBD.doubleValue() * imgWidth);
-            int textHeight = (int) Math.round(textHeightBD.doubleValue() * imgHeight);
+    /**
+     * 使模板相关缓存失效
+     */
+    private void evictTemplate(Long templateId) {
+        if (templateId == null) {
+            return;
+        }
+        // 先递增版本再移除：并发的读取要么被这里移除，要么放入前发现版本已变化
+        templateVersions.merge(templateId, 1L, Long::sum);
+        templateCache.remove(templateId);
+        photoRenderer.invalidate(templateId);
+    }
 
-            // 清除原有文字区域（用指定的覆盖颜色填充）
-            String coverColor = template.getCoverColor() != null ? template.getCoverColor() : "#ffffff";
+    /**
+     * 在后台重新加载模板并编译渲染计划，避免保存后的首次生成请求承担编译开销
+     */
+    private void rebuildTemplateAsync(Long templateId) {
+        if (templateId == null) {
+            return;
+        }
+        templateWarmUpExecutor.execute(() -> {
             try {
-                g2d.setColor(Color.decode(coverColor));
-            } catch (NumberFormatException e) {
-                g2d.setColor(Color.WHITE);
-            }
-            g2d.fillRect(textX, textY, textWidth, textHeight);
-
-            // 设置字体
-            Font font = new Font("微软雅黑", Font.PLAIN, template.getFontSize());
-            g2d.setFont(font);
-
-            // 设置字体颜色
-            g2d.setColor(Color.decode(template.getFontColor()));
-
-            // 获取字体度量信息
-            FontMetrics fm = g2d.getFontMetrics();
-            int lineHeight = fm.getHeight();
-            int ascent = fm.getAscent();
-             
-            // 计算每行最大宽度（紧贴左上角，无边距）
-            int maxWidth = textWidth;
-            
-            // 分割文字为多行
-            List<String> lines = new ArrayList<>();
-            String[] paragraphs = text.split("\n");
-            
-            for (String paragraph : paragraphs) {
-                if (paragraph.isEmpty()) {
-                    lines.add("");
-                    continue;
+                PhotoTemplate template = getTemplate(templateId);
+                if (template != null) {
+                    photoRenderer.warmUp(template);
                 }
-                
-                int start = 0;
-                while (start < paragraph.length()) {
-                    // 找到当前行能容纳的最大字符数
-                    int end = start;
-                    while (end < paragraph.length()) {
-                        String testLine = paragraph.substring(start, end + 1);
-                        if (fm.stringWidth(testLine) > maxWidth) {
-                            break;
-                        }
-                        end++;
-                    }
-                    
-                    if (end == start) {
-                        // 单个字符就超宽，强制换行
-                        lines.add(paragraph.substring(start, start + 1));
-                        start++;
-                    } else {
-                        lines.add(paragraph.substring(start, end));
-                        start = end;
-                    }
-                }
-            }
-            
-            // 计算起始Y坐标（从左上角开始，紧贴左上角）
-            int startY = textY + ascent;
-            
-            // 绘制每一行文字（左对齐，紧贴左上角）
-            int x = textX;
-            for (int i = 0; i < lines.size(); i++) {
-                int y = startY + i * lineHeight;
-                g2d.drawString(lines.get(i), x, y);
+            } catch (Exception e) {
+                log.warn("预热模板失败，templateId={}：{}", templateId, e.getMessage());
             }
-            g2d.dispose();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        templateWarmUpExecutor.shutdownNow();
+    }
+
+    /**
+     * 内部方法：生成图片（不保存记录）
+     * 开启去重时按内容命名，相同输入直接返回已有图片
+     *
+     * @param baseName 文件名（不含扩展名），为空时随机生成；去重模式下忽略
+     */
+    private String generatePhotoInternal(String text, PhotoTemplate template, String baseName) {
+        try {
+            OutputSettings settings = imageEncoder.resolve(template);
 
             // 保存生成的图片
-            String fileName = IdUtil.simpleUUID() + ".png";
-            String outputPath = uploadPath + fileName;
-            File outputFile = new File(outputPath);
-            if (!outputFile.getParentFile().exists()) {
-                outputFile.getParentFile().mkdirs();
+            String fileName;
+            if (imageDeduplicator.isEnabled()) {
+                File templateFile = photoRenderer.resolveTemplateFile(template);
+                fileName = imageDeduplicator.fileName(template, templateFile, settings, text);
+                imageDeduplicator.getOrCreate(fileName, name -> writeImage(template, text, settings, name));
+            } else {
+                fileName = (baseName != null ? baseName : IdUtil.simpleUUID()) + settings.getExtension();
+                writeImage(template, text, settings, fileName);
             }
-            ImageIO.write(image, "png", outputFile);
 
             return "/uploads/" + fileName;
         } catch (IOException e) {
@@ -196,47 +330,339 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
         }
     }
 
+    /**
+     * 渲染并编码到内存后写入图片存储，CRC 随图片一起登记，供导出 ZIP 复用
+     */
+    private void writeImage(PhotoTemplate template, String text, OutputSettings settings, String fileName) throws IOException {
+        EncodedImage image = encodeImage(template, settings, text);
+        imageStore.put(fileName, image.data, image.crc);
+    }
+
     @Override
-    public List<String> batchGeneratePhotos(List<String> textList, Long templateId) {
+    public byte[] renderPreview(PhotoTemplate layout, String text, Integer maxSize) {
+        PhotoTemplate template = previewTemplate(layout);
+        int size = maxSize != null ? Math.min(maxSize, previewMaxSize) : previewMaxSize;
+        size = Math.max(PREVIEW_SIZE_STEP, size / PREVIEW_SIZE_STEP * PREVIEW_SIZE_STEP);
+        try {
+            return photoRenderer.renderPreview(template, text != null ? text : "", size, image -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(image.getWidth() * image.getHeight());
+                imageEncoder.encode(image, PREVIEW_SETTINGS, out);
+                return out.toByteArray();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("生成预览失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并预览用的模板配置：有 id 时以已保存的模板为底，用请求中非空的字段覆盖
+     * 模板图片只允许模板目录下的文件（上传模板返回的路径），不能借预览读取任意文件
+     */
+    private PhotoTemplate previewTemplate(PhotoTemplate layout) {
+        PhotoTemplate template = new PhotoTemplate();
+        PhotoTemplate saved = layout.getId() != null ? requireTemplate(layout.getId()) : null;
+        if (saved != null) {
+            template.setImagePath(saved.getImagePath());
+            template.setTextX(saved.getTextX());
+            template.setTextY(saved.getTextY());
+            template.setTextWidth(saved.getTextWidth());
+            template.setTextHeight(saved.getTextHeight());
+            template.setCoverColor(saved.getCoverColor());
+            template.setFontSize(saved.getFontSize());
+            template.setFontColor(saved.getFontColor());
+        }
+
+        String imagePath = layout.getImagePath();
+        if (imagePath != null && (saved == null || !imagePath.equals(saved.getImagePath()))) {
+            String fileName = imagePath.startsWith(templatePath) ? imagePath.substring(templatePath.length()) : null;
+            if (!ImageFileSender.isSafeName(fileName)) {
+                throw new RuntimeException("模板图片路径不合法");
+            }
+            template.setImagePath(templatePath + fileName);
+        } else if (saved != null) {
+            // 图片未更换时沿用模板ID，缩小图直接取自已缓存的原图
+            template.setId(saved.getId());
+        }
+        if (layout.getTextX() != null) {
+            template.setTextX(layout.getTextX());
+        }
+        if (layout.getTextY() != null) {
+            template.setTextY(layout.getTextY());
+        }
+        if (layout.getTextWidth() != null) {
+            template.setTextWidth(layout.getTextWidth());
+        }
+        if (layout.getTextHeight() != null) {
+            template.setTextHeight(layout.getTextHeight());
+        }
+        if (layout.getCoverColor() != null) {
+            template.setCoverColor(layout.getCoverColor());
+        }
+        if (layout.getFontSize() != null) {
+            template.setFontSize(layout.getFontSize());
+        }
+        if (layout.getFontColor() != null) {
+            template.setFontColor(layout.getFontColor());
+        }
+
+        if (template.getImagePath() == null || template.getFontSize() == null || template.getFontColor() == null) {
+            throw new RuntimeException("模板配置不完整");
+        }
+        return template;
+    }
+
+    @Override
+    public List<String> batchGeneratePhotos(List<String> textList, Long templateId, OrderedBatch.Listener<String> listener) {
+        return runBatch(templateId, consumer -> {
+            for (String text : textList) {
+                consumer.accept(text);
+            }
+        }, listener);
+    }
+
+    @Override
+    public List<String> batchGenerateFromExcel(File excelFile, Long templateId, OrderedBatch.Listener<String> listener) {
+        // 边解析边提交渲染，渲染窗口满时解析暂停
+        return runBatch(templateId, consumer -> ExcelTextReader.readFirstColumn(excelFile, consumer), listener);
+    }
+
+    /**
+     * 执行批量生成：文字逐条提交到渲染线程池，结果按顺序回调，结束后记录一次使用明细
+     */
+    private List<String> runBatch(Long templateId, TextSource source, OrderedBatch.Listener<String> listener) {
+        PhotoTemplate template = requireTemplate(templateId);
+        String batchId = IdUtil.simpleUUID();
+
+        List<String> texts = new ArrayList<>();
         List<String> imagePaths = new ArrayList<>();
-        PhotoTemplate template = getById(templateId);
-        String templateName = template != null ? template.getTemplateName() : "";
-        String textContent = String.join(", ", textList);
-        
-        for (String text : textList) {
-            if (text != null && !text.trim().isEmpty()) {
-                // 使用内部方法生成图片，不保存记录
-                String imagePath = generatePhotoInternal(text, templateId);
+        int[] failures = new int[1];
+        OrderedBatch.Listener<String> collector = new OrderedBatch.Listener<String>() {
+            @Override
+            public void onSuccess(int index, String imagePath) {
                 imagePaths.add(imagePath);
+                listener.onSuccess(index, imagePath);
             }
-        }
 
-        // 记录批量生成使用明细（只记录一次，包含所有图片路径）
-        saveUsageRecord(2, textList.size(), templateId, templateName, textContent, imagePaths);
+            @Override
+            public void onFailure(int index, Throwable error) {
+                failures[0]++;
+                listener.onFailure(index, error);
+            }
+        };
+        submitAll(source, renderExecutor.newBatch(
+                item -> generatePhotoInternal(item.text, template, batchFileName(batchId, item.index)), collector), texts);
 
+        // 只统计成功生成的数量
+        if (!imagePaths.isEmpty()) {
+            saveBatchUsageRecord(template, batchId, texts, imagePaths);
+        }
         return imagePaths;
     }
 
+    /**
+     * 把非空白文字逐条提交到批次并等待全部回调，没有有效文字时抛出异常
+     *
+     * @param texts 收集已提交的文字
+     */
+    private <R> void submitAll(TextSource source, OrderedBatch<BatchItem, R> batch, List<String> texts) {
+        try (OrderedBatch<BatchItem, R> running = batch) {
+            source.forEach(text -> {
+                if (text != null && !text.trim().isEmpty()) {
+                    texts.add(text);
+                    running.submit(new BatchItem(texts.size() - 1, text));
+                }
+            });
+            running.finish();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        if (texts.isEmpty()) {
+            throw new RuntimeException("没有有效的文字内容");
+        }
+    }
+
+    @Override
+    public void renderZip(List<String> textList, Long templateId, HttpServletResponse response) {
+        streamZip(templateId, consumer -> {
+            for (String text : textList) {
+                consumer.accept(text);
+            }
+        }, response);
+    }
+
+    @Override
+    public void renderZipFromExcel(MultipartFile file, Long templateId, HttpServletResponse response) {
+        try {
+            // 上传的 Excel 先转存为临时文件供流式解析，生成的图片不落盘
+            Path spooled = Files.createTempFile("render-zip-", ".xlsx");
+            try {
+                file.transferTo(spooled.toFile());
+                streamZip(templateId, consumer -> ExcelTextReader.readFirstColumn(spooled.toFile(), consumer), response);
+            } finally {
+                Files.deleteIfExists(spooled);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("导出失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 并行渲染并按输入顺序把编码结果直接写入 ZIP 响应
+     * - 图片只在内存中编码，同时驻留的图片数受渲染窗口限制
+     * - 单条失败不中断，失败明细写入 ZIP 末尾的 errors.txt
+     * - 一个条目都没写出时响应尚未提交，异常可以正常返回给客户端
+     */
+    private void streamZip(Long templateId, TextSource source, HttpServletResponse response) {
+        PhotoTemplate template = requireTemplate(templateId);
+        OutputSettings settings = imageEncoder.resolve(template);
+
+        List<String> texts = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        int[] written = new int[1];
+        try {
+            response.setContentType("application/zip");
+            response.setHeader("Content-Disposition", "attachment; filename=photos.zip");
+            ZipOutputStream zos = new ZipOutputStream(response.getOutputStream());
+
+            OrderedBatch.Listener<EncodedImage> writer = new OrderedBatch.Listener<EncodedImage>() {
+                @Override
+                public void onSuccess(int index, EncodedImage image) {
+                    ZipEntry entry = new ZipEntry(String.format("%05d", index + 1) + settings.getExtension());
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(image.data.length);
+                    entry.setCompressedSize(image.data.length);
+                    entry.setCrc(image.crc);
+                    try {
+                        zos.putNextEntry(entry);
+                        zos.write(image.data);
+                        zos.closeEntry();
+                    } catch (IOException e) {
+                        // 客户端断开等写出错误：中断批次，取消未完成的渲染
+                        throw new UncheckedIOException(e);
+                    }
+                    written[0]++;
+                }
+
+                @Override
+                public void onFailure(int index, Throwable error) {
+                    failures.add("第" + (index + 1) + "条：" + error.getMessage());
+                }
+            };
+            submitAll(source, renderExecutor.newBatch(item -> encodeImage(template, settings, item.text), writer), texts);
+
+            if (!failures.isEmpty()) {
+                zos.putNextEntry(new ZipEntry("errors.txt"));
+                zos.write(String.join("\r\n", failures).getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+            zos.finish();
+            zos.flush();
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("导出失败：" + e.getMessage());
+        }
+
+        // 流写完后记录一次使用明细（图片未保存，不记录路径）
+        if (written[0] > 0) {
+            BatchPayload payload = new BatchPayload();
+            payload.setTexts(texts);
+            saveBatchUsageRecord(template, IdUtil.simpleUUID(), written[0], payload);
+        }
+    }
+
+    /**
+     * 渲染并编码到内存
+     */
+    private EncodedImage encodeImage(PhotoTemplate template, OutputSettings settings, String text) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            photoRenderer.render(template, text, image -> {
+                imageEncoder.encode(image, settings, out);
+                return null;
+            });
+            return new EncodedImage(out.toByteArray());
+        } catch (IOException e) {
+            throw new RuntimeException("生成图片失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 内存中的编码结果
+     */
+    private static final class EncodedImage {
+        private final byte[] data;
+        private final long crc;
+
+        private EncodedImage(byte[] data) {
+            this.data = data;
+            CRC32 checksum = new CRC32();
+            checksum.update(data);
+            this.crc = checksum.getValue();
+        }
+    }
+
+    /**
+     * 批次中的一条文字（index 为去掉空白行后的序号，从 0 开始）
+     */
+    private static final class BatchItem {
+        private final int index;
+        private final String text;
+
+        private BatchItem(int index, String text) {
+            this.index = index;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 批量文字来源
+     */
+    private interface TextSource {
+        void forEach(Consumer<String> consumer) throws Exception;
+    }
+
     @Override
     public void exportPhotos(List<String> imagePaths, HttpServletResponse response) {
         try {
+            // 收集要打包的图片（不存在的跳过，重复的只打包一次）
+            List<StoredZipWriter.Entry> entries = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            for (String imagePath : imagePaths) {
+                // 去掉路径前缀
+                String fileName = imagePath.substring(imagePath.lastIndexOf("/") + 1);
+                ImageRegion region = imageStore.find(fileName);
+                if (region != null && names.add(fileName)) {
+                    entries.add(region.isWholeFile()
+                            ? new StoredZipWriter.Entry(fileName, region.getFile(), region.getLength(), imageChecksums.get(region.getFile()))
+                            : new StoredZipWriter.Entry(fileName, region.getFile(), region.getOffset(), region.getLength(),
+                                    region.getCrc(), region.getLastModified()));
+                }
+            }
+
             // 设置响应头
             response.setContentType("application/zip");
             response.setHeader("Content-Disposition", "attachment; filename=photos.zip");
 
-            // 创建ZIP输出流
-            try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
-                for (String imagePath : imagePaths) {
-                    // 去掉路径前缀
-                    String fileName = imagePath.substring(imagePath.lastIndexOf("/") + 1);
-                    File file = new File(uploadPath + fileName);
+            // 图片已是压缩格式，只存储不压缩；大小提前算好，客户端可以显示下载进度
+            if (StoredZipWriter.fits(entries)) {
+                response.setContentLengthLong(StoredZipWriter.contentLength(entries));
+                StoredZipWriter.write(entries, response.getOutputStream());
+                return;
+            }
 
-                    if (file.exists()) {
-                        ZipEntry entry = new ZipEntry(fileName);
-                        zos.putNextEntry(entry);
-                        Files.copy(file.toPath(), zos);
-                        zos.closeEntry();
-                    }
+            // 超出普通 ZIP 限制时交给 ZipOutputStream 写 Zip64（同样不压缩）
+            try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+                for (StoredZipWriter.Entry entry : entries) {
+                    ZipEntry zipEntry = new ZipEntry(entry.getName());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getSize());
+                    zipEntry.setCompressedSize(entry.getSize());
+                    zipEntry.setCrc(entry.getCrc());
+                    zos.putNextEntry(zipEntry);
+                    StoredZipWriter.copy(entry, zos);
+                    zos.closeEntry();
                 }
             }
         } catch (IOException e) {
@@ -274,7 +700,10 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
 
     @Override
     public boolean saveTemplate(PhotoTemplate template) {
-        return saveOrUpdate(template);
+        boolean success = saveOrUpdate(template);
+        evictTemplate(template.getId());
+        rebuildTemplateAsync(template.getId());
+        return success;
     }
 
     @Override
@@ -289,6 +718,9 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
             
             // 保存模板
             save(template);
+            templateCounts.invalidate(template.getUserId());
+            evictTemplate(template.getId());
+            rebuildTemplateAsync(template.getId());
             
             return template;
         } catch (Exception e) {
@@ -296,6 +728,23 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
         }
     }
 
+    @Override
+    public boolean deleteTemplate(Long templateId) {
+        PhotoTemplate template = getTemplate(templateId);
+        boolean success = removeById(templateId);
+        evictTemplate(templateId);
+        if (template != null) {
+            templateCounts.invalidate(template.getUserId());
+        }
+        return success;
+    }
+
+    @Override
+    public long countTemplates(String userId) {
+        return templateCounts.get(userId, () -> count(
+                new LambdaQueryWrapper<PhotoTemplate>().eq(PhotoTemplate::getUserId, userId)));
+    }
+
     @Override
     public List<PhotoTemplate> getActiveTemplates() {
         LambdaQueryWrapper<PhotoTemplate> wrapper = new LambdaQueryWrapper<>();
@@ -304,18 +753,127 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
         return list(wrapper);
     }
 
+    /**
+     * 批量图片的文件名（不含扩展名）：批次ID_序号，序号从 1 开始
+     */
+    private static String batchFileName(String batchId, int index) {
+        return batchId + "_" + (index + 1);
+    }
+
+    /**
+     * 保存批量生成的使用记录：列表只存文字摘要，完整文字和图片路径压缩后存入 payload
+     * 图片全部按 批次ID_序号 命名时不存路径，读取时推导
+     */
+    private void saveBatchUsageRecord(PhotoTemplate template, String batchId, List<String> texts, List<String> imagePaths) {
+        String extension = imageEncoder.resolve(template).getExtension();
+        boolean derivable = imagePaths.size() == texts.size();
+        for (int i = 0; derivable && i < imagePaths.size(); i++) {
+            derivable = imagePaths.get(i).equals("/uploads/" + batchFileName(batchId, i) + extension);
+        }
+
+        BatchPayload payload = new BatchPayload();
+        payload.setTexts(texts);
+        if (derivable) {
+            payload.setExtension(extension);
+        } else {
+            payload.setPaths(imagePaths);
+        }
+        saveBatchUsageRecord(template, batchId, imagePaths.size(), payload);
+    }
+
+    private void saveBatchUsageRecord(PhotoTemplate template, String batchId, int count, BatchPayload payload) {
+        UsageRecord record = newUsageRecord(2, count, template.getId(), template.getTemplateName(), textSummary(payload.getTexts()));
+        record.setBatchId(batchId);
+        try {
+            record.setPayload(writePayload(payload));
+        } catch (IOException e) {
+            log.warn("压缩批量明细失败：{}", e.getMessage());
+        }
+        // 异步批量写入，不占用请求线程
+        usageRecordWriter.submit(record);
+    }
+
+    @Override
+    public void expandRecords(List<UsageRecord> records) {
+        List<Long> ids = new ArrayList<>();
+        for (UsageRecord record : records) {
+            if (record.getBatchId() != null) {
+                ids.add(record.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, UsageRecord> payloads = new HashMap<>();
+        for (UsageRecord row : usageRecordMapper.selectPayloads(ids)) {
+            payloads.put(row.getId(), row);
+        }
+        for (UsageRecord record : records) {
+            UsageRecord row = payloads.get(record.getId());
+            BatchPayload payload = row != null ? readPayload(row.getPayload()) : null;
+            if (payload == null) {
+                continue;
+            }
+            record.setTextContent(String.join(", ", payload.getTexts()));
+            List<String> paths = payload.getPaths();
+            if (paths == null && payload.getExtension() != null) {
+                paths = new ArrayList<>(payload.getTexts().size());
+                for (int i = 0; i < payload.getTexts().size(); i++) {
+                    paths.add("/uploads/" + batchFileName(record.getBatchId(), i) + payload.getExtension());
+                }
+            }
+            if (paths != null) {
+                try {
+                    record.setImagePaths(objectMapper.writeValueAsString(paths));
+                } catch (IOException e) {
+                    log.warn("序列化图片路径失败：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 文字摘要：超出长度时截断并注明总条数
+     */
+    private static String textSummary(List<String> texts) {
+        StringBuilder sb = new StringBuilder();
+        for (String text : texts) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(text);
+            if (sb.length() > TEXT_SUMMARY_LENGTH) {
+                return sb.substring(0, TEXT_SUMMARY_LENGTH) + "…（共" + texts.size() + "条）";
+            }
+        }
+        return sb.toString();
+    }
+
+    private byte[] writePayload(BatchPayload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private BatchPayload readPayload(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(gzip, BatchPayload.class);
+        } catch (IOException e) {
+            log.warn("解压批量明细失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 保存使用记录
      */
     private void saveUsageRecord(int operationType, int count, Long templateId, String templateName, String textContent, Object imagePaths) {
-        UsageRecord record = new UsageRecord();
-        record.setUserId(UserContext.getUserId());
-        record.setUsername(UserContext.getUsername());
-        record.setOperationType(operationType);
-        record.setCount(count);
-        record.setTemplateId(templateId);
-        record.setTemplateName(templateName);
-        record.setTextContent(textContent);
+        UsageRecord record = newUsageRecord(operationType, count, templateId, templateName, textContent);
         
         // 保存图片路径
         if (imagePaths != null) {
@@ -325,15 +883,37 @@ public class PhotoServiceImpl extends ServiceImpl<PhotoTemplateMapper, PhotoTemp
             } else if (imagePaths instanceof List) {
                 // 多个图片路径，转换为JSON字符串
                 try {
-                    com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                    record.setImagePaths(mapper.writeValueAsString(imagePaths));
+                    record.setImagePaths(objectMapper.writeValueAsString(imagePaths));
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    log.warn("序列化图片路径失败：{}", e.getMessage());
                 }
             }
         }
         
+        // 异步批量写入，不占用请求线程
+        usageRecordWriter.submit(record);
+    }
+
+    private UsageRecord newUsageRecord(int operationType, int count, Long templateId, String templateName, String textContent) {
+        UsageRecord record = new UsageRecord();
+        record.setUserId(UserContext.getUserId());
+        record.setUsername(UserContext.getUsername());
+        record.setOperationType(operationType);
+        record.setCount(count);
+        record.setTemplateId(templateId);
+        record.setTemplateName(templateName);
+        record.setTextContent(textContent);
         record.setCreateTime(LocalDateTime.now());
-        usageRecordMapper.insert(record);
+        return record;
+    }
+
+    private static final class CachedTemplate {
+        private final PhotoTemplate template;
+        private final long loadedAt;
+
+        private CachedTemplate(PhotoTemplate template, long loadedAt) {
+            this.template = template;
+            this.loadedAt = loadedAt;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.photo.service.impl;
+
+import com.photo.mapper.UsageDailyStatMapper;
+import com.photo.service.UsageStatService;
+import com.photo.util.CountCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用量统计服务实现类
+ */
+@Service
+public class UsageStatServiceImpl implements UsageStatService {
+
+    @Autowired
+    private UsageDailyStatMapper usageDailyStatMapper;
+
+    // 分页总数缓存（userId -> 记录条数），空字符串表示全部用户
+    private final CountCache recordCounts;
+
+    public UsageStatServiceImpl(@Value("${usage-record.count-cache-seconds:60}") long countCacheSeconds) {
+        this.recordCounts = new CountCache(TimeUnit.SECONDS.toMillis(countCacheSeconds), 10000);
+    }
+
+    @Override
+    public Map<String, Object> getUserStats(String userId) {
+        LocalDate today = LocalDate.now();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("todayCount", usageDailyStatMapper.sumImageCount(userId, today));
+        stats.put("monthCount", usageDailyStatMapper.sumImageCount(userId, today.withDayOfMonth(1)));
+        stats.put("totalCount", usageDailyStatMapper.sumImageCount(userId, null));
+        return stats;
+    }
+
+    @Override
+    public Map<String, Object> getOverallStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("todayCount", usageDailyStatMapper.sumAllImageCount(LocalDate.now()));
+        stats.put("totalCount", usageDailyStatMapper.sumAllImageCount(null));
+        return stats;
+    }
+
+    @Override
+    public List<Map<String, Object>> getTemplateRanking(int days, int limit) {
+        LocalDate from = LocalDate.now().minusDays(Math.max(1, days) - 1L);
+        return usageDailyStatMapper.selectTemplateRanking(from, Math.max(1, limit));
+    }
+
+    @Override
+    public long countRecords(String userId) {
+        return recordCounts.get(userId != null ? userId : "", () -> usageDailyStatMapper.sumRecordCount(userId));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int rebuild() {
+        // 同一事务内清空并重建，读取使用记录时加锁，期间的新记录在重建提交后再写入
+        usageDailyStatMapper.deleteAll();
+        return usageDailyStatMapper.rebuildFromRecords();
+    }
+}
@@ -5,13 +5,13 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.photo.entity.User;
 import com.photo.mapper.UserMapper;
 import com.photo.service.UserService;
-import com.photo.util.SessionManager;
+import com.photo.session.SessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
-import java.util.UUID;
 
 /**
  * 用户服务实现类
@@ -22,6 +22,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Autowired
+    private SessionStore sessionStore;
+
     private static final String TOKEN_SESSION_KEY = "token";
     private static final String USER_SESSION_KEY = "user";
 
@@ -45,7 +48,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     }
 
     @Override
-    public String login(String username, String password, HttpSession session) {
+    public User authenticate(String username, String password) {
         // 查询用户
         User user = getByUsername(username);
         if (user == null) {
@@ -56,41 +59,37 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         if (!passwordEncoder.matches(password, user.getPassword())) {
             throw new RuntimeException("密码错误");
         }
+        return user;
+    }
 
-        // 生成随机 token（不含业务信息）
-        String token = UUID.randomUUID().toString().replace("-", "");
-
-        // 存入 session
-        session.setAttribute(TOKEN_SESSION_KEY, token);
-        session.setAttribute(USER_SESSION_KEY, user);
-        session.setMaxInactiveInterval(1200); // 20 分钟
-
-        // 维护映射 & 单端登录
-        SessionManager.bindSession(user.getId(), token, session);
+    @Override
+    public String login(User user, HttpServletRequest request) {
+        // shared / jwt 不依赖 HttpSession，不创建 Session，也不在其中保存用户和 token
+        HttpSession session = null;
+        if (sessionStore.usesHttpSession()) {
+            session = request.getSession();
+            session.setAttribute(USER_SESSION_KEY, user);
+            session.setMaxInactiveInterval(1200); // 20 分钟
+        }
 
+        // 登记会话 & 单端登录，由会话登记生成 token
+        String token = sessionStore.bind(user, session);
+        if (session != null) {
+            session.setAttribute(TOKEN_SESSION_KEY, token);
+        }
         return token;
     }
 
     @Override
     public boolean logout(String token, HttpSession session) {
-        // 优先按 token 定位原会话并清理（即使当前 session 已失效）
-        String mappedSessionId = SessionManager.getSessionIdByToken(token);
-        if (mappedSessionId != null) {
-            HttpSession mappedSession = SessionManager.getSessionBySessionId(mappedSessionId);
-            if (mappedSession != null) {
-                SessionManager.removeMappings(mappedSession);
-                try { mappedSession.invalidate(); } catch (Exception ignored) {}
-            } else {
-                // 找不到 HttpSession 实例，按 sessionId 清理映射
-                SessionManager.removeMappings(mappedSessionId);
-            }
-        }
+        // 优先按 token 作废会话登记（即使当前 session 已失效）
+        sessionStore.remove(token, session);
 
         // 再清理当前请求携带的 session（若存在且未失效）
         if (session != null) {
+            sessionStore.removeSession(session);
             session.removeAttribute(TOKEN_SESSION_KEY);
             session.removeAttribute(USER_SESSION_KEY);
-            SessionManager.removeMappings(session);
             try { session.invalidate(); } catch (Exception ignored) {}
         }
         return true;
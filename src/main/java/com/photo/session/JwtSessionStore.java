@@ -0,0 +1,174 @@
+package com.photo.session;
+
+import com.photo.entity.LoginSession;
+import com.photo.entity.User;
+import com.photo.mapper.LoginSessionMapper;
+import com.photo.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpSession;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 签名 token 会话（无状态）
+ * - 登录时签发 HS256 token，携带 用户ID、角色、token 代次和过期时间，校验只验签，不依赖 HttpSession
+ * - 单端登录与登出：每个用户在 login_session 中有一个代次，登录、登出时递增，代次不符的 token 视为失效
+ * - 代次在本地缓存 near-cache-seconds，缓存有效期内校验不访问数据库；其他节点上的挤下线、登出在缓存过期后生效
+ * - 剩余有效期不足 1/3 时签发新 token（同一代次），由拦截器通过响应头返回给客户端
+ */
+@Component
+@ConditionalOnProperty(name = "session-store.type", havingValue = "jwt")
+public class JwtSessionStore implements SessionStore {
+
+    private static final int MAX_CAS_ATTEMPTS = 10;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private LoginSessionMapper loginSessionMapper;
+
+    private final long nearCacheMillis;
+
+    // userId -> 当前代次
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong generationLoads = new AtomicLong();
+    private final AtomicLong renewed = new AtomicLong();
+
+    public JwtSessionStore(@Value("${session-store.near-cache-seconds:30}") long nearCacheSeconds) {
+        this.nearCacheMillis = TimeUnit.SECONDS.toMillis(Math.max(0, nearCacheSeconds));
+    }
+
+    @Override
+    public String bind(User user, HttpSession session) {
+        LocalDateTime expireTime = LocalDateTime.now().plusNanos(
+                TimeUnit.MILLISECONDS.toNanos(jwtUtil.getExpirationMillis()));
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            LoginSession current = loginSessionMapper.selectByUserId(user.getId());
+            long generation;
+            if (current == null) {
+                if (loginSessionMapper.insertIfAbsent(user.getId(), null, expireTime) != 1) {
+                    // 并发首次登录，重读后走 CAS
+                    continue;
+                }
+                generation = 1;
+            } else {
+                // 代次 +1，旧 token 随之失效
+                if (loginSessionMapper.replaceToken(user.getId(), current.getGeneration(), null, expireTime) != 1) {
+                    continue;
+                }
+                generation = current.getGeneration() + 1;
+            }
+            remember(user.getId(), generation);
+            return jwtUtil.createToken(user, generation);
+        }
+        throw new RuntimeException("登录冲突，请稍后重试");
+    }
+
+    @Override
+    public Authentication validate(String token, HttpSession session) {
+        Claims claims = jwtUtil.parseToken(token);
+        if (claims == null) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        String userId = claims.getSubject();
+        long generation = jwtUtil.getGeneration(claims);
+        if (generation != currentGeneration(userId, generation)) {
+            // 已被挤下线或已登出
+            rejected.incrementAndGet();
+            return null;
+        }
+        verified.incrementAndGet();
+
+        User user = jwtUtil.getUser(claims);
+        String renewedToken = null;
+        long remaining = claims.getExpiration().getTime() - System.currentTimeMillis();
+        if (remaining < jwtUtil.getExpirationMillis() / 3) {
+            renewedToken = jwtUtil.createToken(user, generation);
+            renewed.incrementAndGet();
+        }
+        return new Authentication(user, renewedToken);
+    }
+
+    @Override
+    public void remove(String token, HttpSession current) {
+        Claims claims = jwtUtil.parseToken(token);
+        if (claims == null) {
+            return;
+        }
+        String userId = claims.getSubject();
+        long generation = jwtUtil.getGeneration(claims);
+        // 只作废 token 所属的代次，不影响之后的新登录
+        if (loginSessionMapper.bumpGeneration(userId, generation) == 1) {
+            remember(userId, generation + 1);
+        }
+    }
+
+    @Override
+    public void removeSession(HttpSession session) {
+        // token 不依赖 HttpSession
+    }
+
+    @Override
+    public boolean usesHttpSession() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "jwt");
+        stats.put("cachedGenerations", generations.size());
+        stats.put("nearCacheMillis", nearCacheMillis);
+        stats.put("verified", verified.get());
+        stats.put("rejected", rejected.get());
+        stats.put("generationLoads", generationLoads.get());
+        stats.put("renewed", renewed.get());
+        return stats;
+    }
+
+    /**
+     * 用户当前代次：本地缓存过期，或 token 代次比缓存新（在其他节点登录）时从数据库读取
+     */
+    private long currentGeneration(String userId, long tokenGeneration) {
+        long now = System.currentTimeMillis();
+        Generation cached = generations.get(userId);
+        if (cached != null && now - cached.loadedAt <= nearCacheMillis && tokenGeneration <= cached.value) {
+            return cached.value;
+        }
+        generationLoads.incrementAndGet();
+        LoginSession loginSession = loginSessionMapper.selectByUserId(userId);
+        return remember(userId, loginSession != null ? loginSession.getGeneration() : 0);
+    }
+
+    /**
+     * 更新本地代次：代次只增不减，与本节点的登录并发时不会被读到的旧值覆盖
+     */
+    private long remember(String userId, long value) {
+        Generation fresh = new Generation(value, System.currentTimeMillis());
+        return generations.merge(userId, fresh, (old, loaded) -> loaded.value >= old.value ? loaded : old).value;
+    }
+
+    private static final class Generation {
+        private final long value;
+        private final long loadedAt;
+
+        private Generation(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.photo.session;
+
+import com.photo.entity.User;
+import com.photo.util.SessionManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpSession;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 单节点内存会话登记（默认实现）
+ * 登记保存在本 JVM 的 {@link SessionManager} 中，token 必须与登录时的 HttpSession 一起使用，
+ * 多节点部署时需要 nginx 会话保持，否则请改用 shared
+ */
+@Component
+@ConditionalOnProperty(name = "session-store.type", havingValue = "local", matchIfMissing = true)
+public class LocalSessionStore implements SessionStore {
+
+    @Override
+    public String bind(User user, HttpSession session) {
+        String token = newToken();
+        SessionManager.bindSession(user, token, session);
+        return token;
+    }
+
+    @Override
+    public Authentication validate(String token, HttpSession session) {
+        if (session == null) {
+            return null;
+        }
+        SessionManager.Binding binding = SessionManager.validate(token, session.getId());
+        return binding != null ? new Authentication(binding.getUser(), null) : null;
+    }
+
+    @Override
+    public void remove(String token, HttpSession current) {
+        SessionManager.Binding binding = SessionManager.removeToken(token);
+        // token 绑定的不是当前 Session 时（例如当前 Session 已过期重建），一并使原 Session 失效
+        if (binding != null && (current == null || !binding.getSessionId().equals(current.getId()))) {
+            try {
+                binding.getSession().invalidate();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void removeSession(HttpSession session) {
+        SessionManager.removeMappings(session);
+    }
+
+    @Override
+    public boolean usesHttpSession() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "local");
+        stats.putAll(SessionManager.getStats());
+        return stats;
+    }
+
+    /**
+     * 随机 token（不含业务信息）
+     */
+    private static String newToken() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
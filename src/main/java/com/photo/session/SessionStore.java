@@ -0,0 +1,76 @@
+package com.photo.session;
+
+import com.photo.entity.User;
+
+import javax.servlet.http.HttpSession;
+import java.util.Map;
+
+/**
+ * 登录会话登记（token 与单端登录状态的存储）
+ * 通过 session-store.type 选择实现：
+ * - local：单节点内存登记，token 与 HttpSession 绑定
+ * - shared：数据库共享登记，多节点部署时任一节点都能校验 token，单端登录跨节点生效
+ * - jwt：HMAC 签名 token，校验只验签，单端登录与登出通过每个用户的 token 代次实现
+ */
+public interface SessionStore {
+
+    /**
+     * 登记登录并返回 token（单端登录：挤掉该用户的旧会话）
+     *
+     * @param session 登录请求的 Session；{@link #usesHttpSession()} 为 false 时为 null
+     */
+    String bind(User user, HttpSession session);
+
+    /**
+     * 校验 token，有效时返回校验结果，否则返回 null
+     *
+     * @param session 当前请求的 Session，可能为 null
+     */
+    Authentication validate(String token, HttpSession session);
+
+    /**
+     * 作废 token（登出、修改密码）
+     *
+     * @param current 当前请求的 Session，由调用方自行清理
+     */
+    void remove(String token, HttpSession current);
+
+    /**
+     * 移除 HttpSession 对应的登记（Session 销毁、登出时调用）
+     */
+    void removeSession(HttpSession session);
+
+    /**
+     * 校验是否依赖 HttpSession（为 true 时没有 Session 的请求直接视为登录过期）
+     */
+    boolean usesHttpSession();
+
+    /**
+     * 登记统计信息
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * token 校验结果
+     */
+    final class Authentication {
+        private final User user;
+        private final String renewedToken;
+
+        public Authentication(User user, String renewedToken) {
+            this.user = user;
+            this.renewedToken = renewedToken;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        /**
+         * 续期后的新 token（需要客户端替换时不为 null）
+         */
+        public String getRenewedToken() {
+            return renewedToken;
+        }
+    }
+}
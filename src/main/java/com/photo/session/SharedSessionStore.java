@@ -0,0 +1,341 @@
+package com.photo.session;
+
+import com.photo.entity.LoginSession;
+import com.photo.entity.User;
+import com.photo.mapper.LoginSessionMapper;
+import com.photo.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpSession;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库共享会话登记（多节点部署）
+ * - login_session 每个用户一行，token 列即当前有效 token：单端登录是一次按代次的 CAS 更新，旧 token 随之失效
+ * - 校验走本地近端缓存，缓存有效期内不访问数据库；只有缓存过期、接近过期需要续期时才查询或写入
+ * - 作废 token 时写入 login_revocation，各节点轮询新增记录并清除本地缓存，因此被挤下线在轮询间隔内跨节点生效
+ * - 自增ID按分配顺序而不是提交顺序可见：轮询时跳过的ID记为空缺，在作废记录保留期内每次轮询重查，
+ *   较晚提交的小ID同样在下一次轮询时生效
+ * - token 不依赖 HttpSession，请求可以落到任意节点
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session-store.type", havingValue = "shared")
+public class SharedSessionStore implements SessionStore {
+
+    private static final int REVOCATION_BATCH = 1000;
+    private static final int MAX_CAS_ATTEMPTS = 10;
+    // 一次跳过的ID过多时只记录最靠近的这些（大段空缺通常来自回滚或自增步长调整）
+    private static final int MAX_GAPS_PER_POLL = 1000;
+
+    @Autowired
+    private LoginSessionMapper loginSessionMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final long timeoutMillis;
+    private final long refreshThresholdMillis;
+    private final long nearCacheMillis;
+    private final long pollIntervalMillis;
+    private final long cleanupIntervalMillis;
+
+    // token -> 近端缓存条目
+    private final Map<String, Cached> nearCache = new ConcurrentHashMap<>();
+
+    private Thread poller;
+    private volatile boolean running;
+    private volatile long lastRevocationId;
+    // 跳过的作废记录ID -> 发现时间（只由轮询线程修改）
+    private final ConcurrentSkipListMap<Long, Long> revocationGaps = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong extensions = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong revocationsApplied = new AtomicLong();
+    private final AtomicLong pollFailures = new AtomicLong();
+
+    public SharedSessionStore(@Value("${session-store.timeout-seconds:1200}") long timeoutSeconds,
+                              @Value("${session-store.near-cache-seconds:30}") long nearCacheSeconds,
+                              @Value("${session-store.poll-interval-ms:500}") long pollIntervalMillis) {
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, timeoutSeconds));
+        // 与 TokenRefreshInterceptor 一致：剩余不足 1/3 时续期
+        this.refreshThresholdMillis = timeoutMillis / 3;
+        this.nearCacheMillis = TimeUnit.SECONDS.toMillis(Math.max(0, nearCacheSeconds));
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        // 作废记录至少保留到所有节点的近端缓存都已过期
+        this.cleanupIntervalMillis = Math.max(TimeUnit.MINUTES.toMillis(1), nearCacheMillis * 2);
+    }
+
+    @PostConstruct
+    public void start() {
+        // 只关心启动之后的作废记录，之前的 token 本地缓存里本来就没有
+        lastRevocationId = loginSessionMapper.selectMaxRevocationId();
+        running = true;
+        poller = new Thread(this::pollLoop, "session-revocation-poller");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+
+    @Override
+    public String bind(User user, HttpSession session) {
+        String token = newToken();
+        LocalDateTime expireTime = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            LoginSession current = loginSessionMapper.selectByUserId(user.getId());
+            if (current == null) {
+                if (loginSessionMapper.insertIfAbsent(user.getId(), token, expireTime) == 1) {
+                    return token;
+                }
+                // 并发首次登录，重读后走 CAS
+                continue;
+            }
+            // 替换 token 与写入作废记录在同一事务中，其他节点不会漏掉被挤下线的 token
+            Boolean replaced = transactionTemplate.execute(status -> {
+                if (loginSessionMapper.replaceToken(user.getId(), current.getGeneration(), token, expireTime) != 1) {
+                    return false;
+                }
+                if (current.getToken() != null) {
+                    loginSessionMapper.insertRevocation(current.getToken());
+                }
+                return true;
+            });
+            if (Boolean.TRUE.equals(replaced)) {
+                if (current.getToken() != null && nearCache.remove(current.getToken()) != null) {
+                    evictions.incrementAndGet();
+                }
+                return token;
+            }
+        }
+        throw new RuntimeException("登录冲突，请稍后重试");
+    }
+
+    @Override
+    public Authentication validate(String token, HttpSession session) {
+        long now = System.currentTimeMillis();
+        Cached cached = nearCache.get(token);
+        if (cached == null || now - cached.loadedAt > nearCacheMillis || cached.expireAt <= now) {
+            long applied = revocationsApplied.get();
+            cached = load(token, now);
+            if (cached == null) {
+                nearCache.remove(token);
+                return null;
+            }
+            cache(token, cached, applied);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        // 接近过期时续期（只在剩余不足 1/3 时写库）
+        if (cached.expireAt - now < refreshThresholdMillis) {
+            cached = extend(token, cached, now);
+            if (cached == null) {
+                return null;
+            }
+        }
+        return cached.authentication;
+    }
+
+    @Override
+    public void remove(String token, HttpSession current) {
+        transactionTemplate.execute(status -> {
+            if (loginSessionMapper.clearToken(token) == 1) {
+                loginSessionMapper.insertRevocation(token);
+            }
+            return null;
+        });
+        nearCache.remove(token);
+    }
+
+    @Override
+    public void removeSession(HttpSession session) {
+        // token 有自己的过期时间，与节点本地的 HttpSession 无关
+    }
+
+    @Override
+    public boolean usesHttpSession() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "shared");
+        stats.put("nearCacheEntries", nearCache.size());
+        stats.put("nearCacheMillis", nearCacheMillis);
+        stats.put("hits", hits.get());
+        stats.put("loads", loads.get());
+        stats.put("extensions", extensions.get());
+        stats.put("evictions", evictions.get());
+        stats.put("lastRevocationId", lastRevocationId);
+        stats.put("revocationGaps", revocationGaps.size());
+        stats.put("revocationsApplied", revocationsApplied.get());
+        stats.put("pollFailures", pollFailures.get());
+        return stats;
+    }
+
+    private Cached load(String token, long now) {
+        loads.incrementAndGet();
+        LoginSession loginSession = loginSessionMapper.selectActiveByToken(token, LocalDateTime.now());
+        if (loginSession == null) {
+            return null;
+        }
+        User user = userMapper.selectById(loginSession.getUserId());
+        if (user == null) {
+            return null;
+        }
+        return new Cached(user, toMillis(loginSession.getExpireTime()), now);
+    }
+
+    private Cached extend(String token, Cached cached, long now) {
+        long applied = revocationsApplied.get();
+        LocalDateTime expireTime = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        if (loginSessionMapper.extend(token, expireTime, LocalDateTime.now()) != 1) {
+            // 已被作废或已过期
+            nearCache.remove(token);
+            return null;
+        }
+        extensions.incrementAndGet();
+        Cached extended = new Cached(cached.user, toMillis(expireTime), cached.loadedAt);
+        cache(token, extended, applied);
+        return extended;
+    }
+
+    /**
+     * 写入近端缓存：查询期间轮询线程处理过新的作废记录时不缓存，避免把刚作废的 token 放回缓存
+     */
+    private void cache(String token, Cached cached, long applied) {
+        nearCache.put(token, cached);
+        if (revocationsApplied.get() != applied) {
+            nearCache.remove(token, cached);
+        }
+    }
+
+    private void pollLoop() {
+        long lastCleanup = System.currentTimeMillis();
+        while (running) {
+            try {
+                Thread.sleep(pollIntervalMillis);
+                applyRevocations();
+                long now = System.currentTimeMillis();
+                if (now - lastCleanup >= cleanupIntervalMillis) {
+                    lastCleanup = now;
+                    cleanup(now);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                pollFailures.incrementAndGet();
+                log.warn("同步登录会话作废记录失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    private void applyRevocations() {
+        long now = System.currentTimeMillis();
+        // 超过保留期的空缺不再等待：对应的作废记录即使存在也会被清理掉
+        revocationGaps.values().removeIf(noticedAt -> now - noticedAt > cleanupIntervalMillis);
+        if (!revocationGaps.isEmpty()) {
+            for (Map<String, Object> row : loginSessionMapper.selectRevocationsBetween(
+                    revocationGaps.firstKey(), revocationGaps.lastKey())) {
+                if (revocationGaps.remove(((Number) row.get("id")).longValue()) != null) {
+                    revoke((String) row.get("token"));
+                }
+            }
+        }
+
+        List<Map<String, Object>> rows;
+        do {
+            rows = loginSessionMapper.selectRevocationsAfter(lastRevocationId, REVOCATION_BATCH);
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                // 中间的ID可能属于尚未提交的事务
+                for (long gap = Math.max(lastRevocationId, id - MAX_GAPS_PER_POLL - 1) + 1; gap < id; gap++) {
+                    revocationGaps.put(gap, now);
+                }
+                lastRevocationId = id;
+                revoke((String) row.get("token"));
+            }
+        } while (rows.size() == REVOCATION_BATCH);
+    }
+
+    /**
+     * 先递增计数再清除缓存：与 cache() 的检查配合，查询期间作废的 token 不会留在缓存里
+     */
+    private void revoke(String token) {
+        revocationsApplied.incrementAndGet();
+        if (nearCache.remove(token) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void cleanup(long now) {
+        // 近端缓存：超过缓存有效期的条目下次校验时也会重新加载，直接移除
+        Iterator<Cached> it = nearCache.values().iterator();
+        while (it.hasNext()) {
+            Cached cached = it.next();
+            if (now - cached.loadedAt > nearCacheMillis || cached.expireAt <= now) {
+                it.remove();
+            }
+        }
+        // 多个节点同时清理也只是重复执行同样的更新
+        LocalDateTime current = LocalDateTime.now();
+        loginSessionMapper.clearExpired(current);
+        loginSessionMapper.deleteRevocationsBefore(
+                current.minusNanos(TimeUnit.MILLISECONDS.toNanos(cleanupIntervalMillis)));
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Cached {
+        private final User user;
+        private final Authentication authentication;
+        private final long expireAt;
+        private final long loadedAt;
+
+        private Cached(User user, long expireAt, long loadedAt) {
+            this.user = user;
+            this.authentication = new Authentication(user, null);
+            this.expireAt = expireAt;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * 随机 token（不含业务信息）
+     */
+    private static String newToken() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
@@ -0,0 +1,119 @@
+package com.photo.store;
+
+import com.photo.render.ImageChecksums;
+import com.photo.util.ImageFileSender;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文件存储（默认实现）
+ * 每张图片一个文件，先写临时文件再原子改名；CRC 登记到 {@link ImageChecksums}
+ */
+@Component
+@ConditionalOnProperty(name = "image-store.type", havingValue = "file", matchIfMissing = true)
+public class FileImageStore implements ImageStore {
+
+    @Autowired
+    private ImageChecksums imageChecksums;
+
+    private final File directory;
+
+    public FileImageStore(@Value("${file.upload-path}") String uploadPath) {
+        this.directory = new File(uploadPath);
+    }
+
+    @Override
+    public void put(String fileName, byte[] data, long crc) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File target = new File(directory, fileName);
+        File temp = new File(directory, fileName + ".tmp");
+        try {
+            Files.write(temp.toPath(), data);
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        imageChecksums.put(fileName, data.length, crc);
+    }
+
+    @Override
+    public ImageRegion find(String fileName) {
+        File file = resolve(fileName);
+        return file != null && file.isFile() ? ImageRegion.ofFile(file) : null;
+    }
+
+    @Override
+    public boolean touch(String fileName) {
+        File file = resolve(fileName);
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public boolean delete(String fileName) throws IOException {
+        File file = resolve(fileName);
+        return file != null && Files.deleteIfExists(file.toPath());
+    }
+
+    @Override
+    public ImageCursor openCursor() throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath());
+        Iterator<Path> paths = stream.iterator();
+        return new ImageCursor() {
+            @Override
+            public String next() throws IOException {
+                try {
+                    while (paths.hasNext()) {
+                        String name = paths.next().getFileName().toString();
+                        // 跳过写了一半的临时文件
+                        if (ImageFileSender.isSafeName(name)) {
+                            return name;
+                        }
+                    }
+                    return null;
+                } catch (DirectoryIteratorException e) {
+                    throw e.getCause();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "file");
+        stats.put("directory", directory.getPath());
+        return stats;
+    }
+
+    private File resolve(String fileName) {
+        return ImageFileSender.isSafeName(fileName) ? new File(directory, fileName) : null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.photo.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 图片遍历游标（弱一致：遍历期间新增、删除的图片可能遍历到也可能遍历不到），用完需关闭
+ */
+public interface ImageCursor extends Closeable {
+
+    /**
+     * 下一张图片的文件名，遍历结束时返回 null
+     */
+    String next() throws IOException;
+}
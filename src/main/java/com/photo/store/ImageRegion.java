@@ -0,0 +1,92 @@
+package com.photo.store;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 图片在磁盘上的位置：文件中从 offset 开始的 length 个字节
+ * 文件存储时是整个文件，打包存储时是段文件中的一段；读取按位置进行，不依赖共享的文件指针
+ */
+public final class ImageRegion {
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final long crc;
+    private final long lastModified;
+    private final boolean wholeFile;
+
+    private ImageRegion(File file, long offset, long length, long crc, long lastModified, boolean wholeFile) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.crc = crc;
+        this.lastModified = lastModified;
+        this.wholeFile = wholeFile;
+    }
+
+    /**
+     * 整个文件（CRC 未知）
+     */
+    public static ImageRegion ofFile(File file) {
+        return new ImageRegion(file, 0, file.length(), -1, file.lastModified(), true);
+    }
+
+    /**
+     * 段文件中的一段
+     */
+    public static ImageRegion ofSegment(File segment, long offset, long length, long crc, long lastModified) {
+        return new ImageRegion(segment, offset, length, crc, lastModified, false);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 图片内容的 CRC32，未知时为 -1
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isWholeFile() {
+        return wholeFile;
+    }
+
+    /**
+     * 把图片内容转写到输出流（不关闭输出流）
+     */
+    public void transferTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    throw new IOException("图片内容不完整：" + file.getName());
+                }
+                position += n;
+            }
+        }
+    }
+}
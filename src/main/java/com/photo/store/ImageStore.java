@@ -0,0 +1,45 @@
+package com.photo.store;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 生成图片存储（按文件名存取，文件名即 /uploads/ 后面的部分）
+ * 通过 image-store.type 选择实现：
+ * - file：每张图片一个文件，保存在 file.upload-path 目录下（nginx 可直接提供）
+ * - packed：追加写入大的段文件，内存索引记录每张图片所在的段和偏移，后台压缩回收已删除图片的空间
+ */
+public interface ImageStore {
+
+    /**
+     * 保存图片（同名图片已存在时覆盖），返回后即可读取，不会读到写了一半的内容
+     *
+     * @param crc 图片内容的 CRC32，导出 ZIP 时复用
+     */
+    void put(String fileName, byte[] data, long crc) throws IOException;
+
+    /**
+     * 查找图片所在的文件区域，不存在时返回 null
+     */
+    ImageRegion find(String fileName);
+
+    /**
+     * 图片是否存在；存在时刷新访问时间（去重命中的常用图片不会被当作过期文件）
+     */
+    boolean touch(String fileName);
+
+    /**
+     * 删除图片，图片不存在时返回 false
+     */
+    boolean delete(String fileName) throws IOException;
+
+    /**
+     * 打开遍历全部图片的游标（后台清理逐批遍历，不一次性列出全部文件名）
+     */
+    ImageCursor openCursor() throws IOException;
+
+    /**
+     * 存储统计信息
+     */
+    Map<String, Object> getStats();
+}
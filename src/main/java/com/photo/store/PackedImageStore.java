@@ -0,0 +1,583 @@
+package com.photo.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 打包存储：图片追加写入大的段文件，不再在 uploads 目录下为每张图片建一个文件
+ * - 段文件只追加，写满 segment-max-bytes 后换新段；每条记录 = 记录头 + 文件名 + 图片内容，删除写一条删除记录
+ * - 索引（文件名 -> 段、偏移、长度、CRC）只在内存中，启动时按顺序扫描各段的记录头重建，后写的记录覆盖先写的
+ * - 写入不逐条刷盘（换段和压缩后才 force）：进程崩溃时末段尾部可能只落盘了记录头，
+ *   因此启动时末段的图片记录还要校验内容 CRC，从第一条校验失败的记录起截掉
+ * - 读取按位置进行（FileChannel.transferTo / Tomcat sendfile），不需要打开单独的文件
+ * - 后台压缩：失效字节占比达到 compact-garbage-ratio 的段，把仍有效的记录搬到当前段后整段退役；
+ *   退役的段文件保留 retired-segment-grace-seconds 后再删除，正在进行的读取和 sendfile 不受影响
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "image-store.type", havingValue = "packed")
+public class PackedImageStore implements ImageStore {
+
+    // 记录头：魔数(4) + 写入时间(8) + 文件名字节数(2) + 图片字节数(4，删除记录为 -1) + CRC32(4)
+    private static final int MAGIC = 0x50494d47;
+    private static final int HEADER_SIZE = 22;
+    private static final int TOMBSTONE = -1;
+    private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final File directory;
+    private final long segmentMaxBytes;
+    private final long compactIntervalMillis;
+    private final double compactGarbageRatio;
+    private final long retiredGraceMillis;
+
+    // 文件名 -> 位置（只在持有 writeLock 时修改，保证各段的有效字节数与索引一致）
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    // 段ID -> 在用的段（按ID排序，即写入先后）
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    // 已退役、等待删除的段
+    private final List<Segment> retired = new CopyOnWriteArrayList<>();
+
+    private final Object writeLock = new Object();
+    private Segment active;
+
+    private Thread compactor;
+    private volatile boolean running;
+
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong movedRecords = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicLong compactFailures = new AtomicLong();
+
+    public PackedImageStore(@Value("${image-store.segment-path:./image-segments/}") String segmentPath,
+                            @Value("${image-store.segment-max-bytes:268435456}") long segmentMaxBytes,
+                            @Value("${image-store.compact-interval-seconds:300}") long compactIntervalSeconds,
+                            @Value("${image-store.compact-garbage-ratio:0.5}") double compactGarbageRatio,
+                            @Value("${image-store.retired-segment-grace-seconds:600}") long retiredGraceSeconds) {
+        this.directory = new File(segmentPath);
+        this.segmentMaxBytes = Math.max(1024 * 1024, segmentMaxBytes);
+        this.compactIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, compactIntervalSeconds));
+        this.compactGarbageRatio = compactGarbageRatio;
+        this.retiredGraceMillis = TimeUnit.SECONDS.toMillis(Math.max(0, retiredGraceSeconds));
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File[] files = directory.listFiles();
+        TreeMap<Integer, File> found = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+                if (matcher.matches()) {
+                    found.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            }
+        }
+
+        // 按写入先后扫描，后写的记录覆盖先写的
+        long begin = System.currentTimeMillis();
+        int last = found.isEmpty() ? 0 : found.lastKey();
+        for (Map.Entry<Integer, File> entry : found.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), entry.getValue());
+            segments.put(segment.id, segment);
+            load(segment, entry.getKey() == last);
+        }
+        synchronized (writeLock) {
+            Segment latest = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            active = latest != null && latest.size < segmentMaxBytes ? latest : newSegment();
+        }
+        log.info("打包图片存储已加载：{} 个段，{} 张图片，耗时 {} ms",
+                segments.size(), index.size(), System.currentTimeMillis() - begin);
+
+        running = true;
+        compactor = new Thread(this::compactLoop, "image-store-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (compactor != null) {
+            compactor.interrupt();
+        }
+        synchronized (writeLock) {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            for (Segment segment : retired) {
+                segment.close();
+            }
+        }
+    }
+
+    @Override
+    public void put(String fileName, byte[] data, long crc) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        // 记录在锁外组装好，锁内只做一次追加写
+        ByteBuffer record = record(name, data, data.length, (int) crc, System.currentTimeMillis());
+        synchronized (writeLock) {
+            Location location = append(record, name.length, data.length, crc);
+            replace(fileName, location);
+        }
+        puts.incrementAndGet();
+    }
+
+    @Override
+    public ImageRegion find(String fileName) {
+        Location location = index.get(fileName);
+        if (location == null) {
+            return null;
+        }
+        return ImageRegion.ofSegment(location.segment.file, location.dataOffset(), location.length,
+                location.crc, location.writtenAt);
+    }
+
+    @Override
+    public boolean touch(String fileName) {
+        // 段内记录不可修改，没有访问时间，按写入时间计算
+        return index.containsKey(fileName);
+    }
+
+    @Override
+    public boolean delete(String fileName) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = record(name, null, TOMBSTONE, 0, System.currentTimeMillis());
+        synchronized (writeLock) {
+            if (!index.containsKey(fileName)) {
+                return false;
+            }
+            // 先写删除记录，重启后扫描到它才不会把图片恢复出来
+            appendTombstone(record);
+            replace(fileName, null);
+        }
+        deletes.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public ImageCursor openCursor() {
+        Iterator<String> names = index.keySet().iterator();
+        return new ImageCursor() {
+            @Override
+            public String next() {
+                return names.hasNext() ? names.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long totalBytes = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.size;
+            liveBytes += segment.liveBytes.get();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "packed");
+        stats.put("directory", directory.getPath());
+        stats.put("images", index.size());
+        stats.put("segments", segments.size());
+        stats.put("retiredSegments", retired.size());
+        stats.put("totalBytes", totalBytes);
+        stats.put("liveBytes", liveBytes);
+        stats.put("puts", puts.get());
+        stats.put("deletes", deletes.get());
+        stats.put("compactions", compactions.get());
+        stats.put("movedRecords", movedRecords.get());
+        stats.put("reclaimedBytes", reclaimedBytes.get());
+        stats.put("compactFailures", compactFailures.get());
+        return stats;
+    }
+
+    /**
+     * 扫描段内记录重建索引；末段尾部不完整或内容未落盘的记录（写入时进程退出）截掉
+     * 之前的段在换段时已经 force，只检查记录头
+     */
+    private void load(Segment segment, boolean last) throws IOException {
+        long fileSize = segment.channel.size();
+        RecordScanner scanner = new RecordScanner(segment, fileSize, last);
+        while (scanner.next()) {
+            String fileName = scanner.fileName;
+            if (scanner.dataLength == TOMBSTONE) {
+                replace(fileName, null);
+            } else {
+                replace(fileName, new Location(segment, scanner.position, scanner.nameLength,
+                        scanner.dataLength, scanner.crc, scanner.writtenAt));
+            }
+        }
+        segment.size = scanner.position;
+        if (scanner.position < fileSize) {
+            if (last) {
+                log.warn("段 {} 尾部有 {} 字节不完整的记录，已截掉", segment.file.getName(), fileSize - scanner.position);
+                segment.channel.truncate(scanner.position);
+            } else {
+                log.warn("段 {} 在偏移 {} 处记录损坏，之后的记录已忽略", segment.file.getName(), scanner.position);
+            }
+        }
+    }
+
+    /**
+     * 追加一条图片记录并返回其位置（调用方持有 writeLock）
+     */
+    private Location append(ByteBuffer record, int nameLength, int dataLength, long crc) throws IOException {
+        Segment segment = activeFor(record.remaining());
+        long offset = segment.size;
+        long writtenAt = record.getLong(record.position() + 4);
+        writeFully(segment.channel, record, offset);
+        segment.size = offset + HEADER_SIZE + nameLength + dataLength;
+        return new Location(segment, offset, nameLength, dataLength, crc, writtenAt);
+    }
+
+    /**
+     * 追加一条删除记录（调用方持有 writeLock），删除记录不计入有效字节
+     */
+    private void appendTombstone(ByteBuffer record) throws IOException {
+        Segment segment = activeFor(record.remaining());
+        long offset = segment.size;
+        int length = record.remaining();
+        writeFully(segment.channel, record, offset);
+        segment.size = offset + length;
+    }
+
+    /**
+     * 更新索引并维护各段的有效字节数（调用方持有 writeLock，启动扫描时单线程）
+     */
+    private void replace(String fileName, Location location) {
+        Location old = location != null ? index.put(fileName, location) : index.remove(fileName);
+        if (old != null) {
+            old.segment.liveBytes.addAndGet(-old.recordSize());
+        }
+        if (location != null) {
+            location.segment.liveBytes.addAndGet(location.recordSize());
+        }
+    }
+
+    private Segment activeFor(int recordSize) throws IOException {
+        if (active.size > 0 && active.size + recordSize > segmentMaxBytes) {
+            active.channel.force(false);
+            active = newSegment();
+        }
+        return active;
+    }
+
+    private Segment newSegment() throws IOException {
+        int id = Math.max(segments.isEmpty() ? 0 : segments.lastKey(), maxRetiredId()) + 1;
+        Segment segment = new Segment(id, new File(directory, String.format("segment-%08d.dat", id)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private int maxRetiredId() {
+        int max = 0;
+        for (Segment segment : retired) {
+            max = Math.max(max, segment.id);
+        }
+        return max;
+    }
+
+    /**
+     * 磁盘上最早的段ID（含尚未删除的退役段，重启时它们同样会被扫描）
+     */
+    private int oldestSegmentId() {
+        int min = segments.firstKey();
+        for (Segment segment : retired) {
+            min = Math.min(min, segment.id);
+        }
+        return min;
+    }
+
+    private void compactLoop() {
+        while (running) {
+            try {
+                Thread.sleep(compactIntervalMillis);
+                deleteRetired(System.currentTimeMillis());
+                compact();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                compactFailures.incrementAndGet();
+                log.warn("压缩图片段失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 压缩失效字节占比达到阈值的段（当前写入的段除外）
+     */
+    private void compact() throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (writeLock) {
+            for (Segment segment : segments.values()) {
+                long garbage = segment.size - segment.liveBytes.get();
+                if (segment != active && segment.size > 0 && garbage >= segment.size * compactGarbageRatio) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        for (Segment segment : candidates) {
+            compact(segment);
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        // 没有更早的段文件时，段内的删除记录已无可遮盖的旧记录，可以丢弃
+        boolean oldest = oldestSegmentId() == segment.id;
+        long garbage = segment.size - segment.liveBytes.get();
+        RecordScanner scanner = new RecordScanner(segment, segment.size, false);
+        while (scanner.next()) {
+            String fileName = scanner.fileName;
+            if (scanner.dataLength == TOMBSTONE) {
+                if (!oldest) {
+                    ByteBuffer record = record(scanner.nameBytes, null, TOMBSTONE, 0, scanner.writtenAt);
+                    synchronized (writeLock) {
+                        // 已重新写入同名图片时删除记录不再需要，搬过去反而会遮盖新图片
+                        if (!index.containsKey(fileName)) {
+                            appendTombstone(record);
+                        }
+                    }
+                }
+                continue;
+            }
+            Location current = index.get(fileName);
+            if (current == null || current.segment != segment || current.offset != scanner.position) {
+                continue;
+            }
+            // 读取在锁外进行，写入前再确认记录仍然有效
+            ByteBuffer data = ByteBuffer.allocate(scanner.dataLength);
+            readFully(segment.channel, data, current.dataOffset());
+            ByteBuffer record = record(scanner.nameBytes, data.array(), scanner.dataLength, scanner.crc, scanner.writtenAt);
+            synchronized (writeLock) {
+                if (index.get(fileName) == current) {
+                    Location moved = append(record, scanner.nameLength, scanner.dataLength, current.crc);
+                    replace(fileName, moved);
+                    movedRecords.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized (writeLock) {
+            segments.remove(segment.id);
+            segment.retiredAt = System.currentTimeMillis();
+            retired.add(segment);
+            active.channel.force(false);
+        }
+        compactions.incrementAndGet();
+        reclaimedBytes.addAndGet(garbage);
+        log.info("图片段 {} 已压缩，回收 {} 字节", segment.file.getName(), garbage);
+    }
+
+    /**
+     * 删除退役超过宽限期的段文件
+     */
+    private void deleteRetired(long now) throws IOException {
+        for (Segment segment : retired) {
+            if (now - segment.retiredAt >= retiredGraceMillis) {
+                segment.close();
+                Files.deleteIfExists(segment.file.toPath());
+                retired.remove(segment);
+            }
+        }
+    }
+
+    private static ByteBuffer record(byte[] name, byte[] data, int dataLength, int crc, long writtenAt) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + name.length + Math.max(0, dataLength));
+        buffer.putInt(MAGIC);
+        buffer.putLong(writtenAt);
+        buffer.putShort((short) name.length);
+        buffer.putInt(dataLength);
+        buffer.putInt(crc);
+        buffer.put(name);
+        if (data != null) {
+            buffer.put(data);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * 按顺序读取段内记录头（只读文件名，不校验时跳过图片内容）
+     */
+    private static final class RecordScanner {
+        private final Segment segment;
+        private final long limit;
+        private final boolean verify;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        // 当前记录的起始偏移；扫描结束时为最后一条完整记录之后的位置
+        private long position;
+        private long nextPosition;
+        private long writtenAt;
+        private int nameLength;
+        private int dataLength;
+        private int crc;
+        private byte[] nameBytes;
+        private String fileName;
+
+        private RecordScanner(Segment segment, long limit, boolean verify) {
+            this.segment = segment;
+            this.limit = limit;
+            this.verify = verify;
+        }
+
+        private boolean next() throws IOException {
+            position = nextPosition;
+            if (position + HEADER_SIZE > limit) {
+                return false;
+            }
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                return false;
+            }
+            writtenAt = header.getLong();
+            nameLength = header.getShort() & 0xffff;
+            dataLength = header.getInt();
+            crc = header.getInt();
+            long end = position + HEADER_SIZE + nameLength + Math.max(0, dataLength);
+            if (dataLength < TOMBSTONE || end > limit) {
+                return false;
+            }
+            ByteBuffer name = ByteBuffer.allocate(nameLength);
+            readFully(segment.channel, name, position + HEADER_SIZE);
+            nameBytes = name.array();
+            if (verify && dataLength > 0 && !crcMatches(position + HEADER_SIZE + nameLength)) {
+                return false;
+            }
+            fileName = new String(nameBytes, StandardCharsets.UTF_8);
+            nextPosition = end;
+            return true;
+        }
+
+        /**
+         * 图片内容的 CRC32 是否与记录头一致
+         */
+        private boolean crcMatches(long dataOffset) throws IOException {
+            CRC32 checksum = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(dataLength, VERIFY_BUFFER_SIZE));
+            long offset = dataOffset;
+            long end = dataOffset + dataLength;
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+                readFully(segment.channel, buffer, offset);
+                buffer.flip();
+                offset += buffer.remaining();
+                checksum.update(buffer);
+            }
+            return (int) checksum.getValue() == crc;
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        // 已写入的字节数（在持有 writeLock 时修改）
+        private volatile long size;
+        // 索引仍指向的记录字节数
+        private final AtomicLong liveBytes = new AtomicLong();
+        private volatile long retiredAt;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 图片记录的位置（不可变）
+     */
+    private static final class Location {
+        private final Segment segment;
+        private final long offset;
+        private final int nameLength;
+        private final int length;
+        private final long crc;
+        private final long writtenAt;
+
+        private Location(Segment segment, long offset, int nameLength, int length, long crc, long writtenAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.nameLength = nameLength;
+            this.length = length;
+            this.crc = crc & 0xffffffffL;
+            this.writtenAt = writtenAt;
+        }
+
+        private long dataOffset() {
+            return offset + HEADER_SIZE + nameLength;
+        }
+
+        private long recordSize() {
+            return HEADER_SIZE + nameLength + length;
+        }
+    }
+}
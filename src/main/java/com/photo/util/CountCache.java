@@ -0,0 +1,57 @@
+package com.photo.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 计数缓存：总数在有效期内复用上次的结果，用于分页接口的近似总数
+ */
+public class CountCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CountCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 获取计数，缓存过期或不存在时调用 loader 重新计算
+     */
+    public long get(String key, LongSupplier loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.value;
+        }
+        long value = loader.getAsLong();
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(e -> e.expiresAt <= now);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry(value, now + ttlMillis));
+        return value;
+    }
+
+    /**
+     * 移除计数（数据明显变化时调用，例如新增或删除模板）
+     */
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    private static final class Entry {
+        private final long value;
+        private final long expiresAt;
+
+        private Entry(long value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
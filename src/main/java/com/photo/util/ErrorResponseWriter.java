@@ -0,0 +1,42 @@
+package com.photo.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.photo.common.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 直接写响应体的接口（图片、ZIP）出错时返回 JSON 错误，格式与 {@link Result} 相同，HTTP 状态码与 code 一致
+ * 响应已提交（内容已开始写出）后无法再改状态码，由调用方中断连接
+ */
+@Component
+public class ErrorResponseWriter {
+
+    // 登录续期的 token 由拦截器写入响应头，清空响应时保留
+    private static final String RENEWED_TOKEN_HEADER = "X-Auth-Token";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 写出错误响应，响应已提交时返回 false
+     */
+    public boolean write(HttpServletResponse response, int status, String message) throws IOException {
+        if (response.isCommitted()) {
+            return false;
+        }
+        // 清掉已设置的 Content-Type、Content-Disposition 等响应头和缓冲区中的内容
+        String renewedToken = response.getHeader(RENEWED_TOKEN_HEADER);
+        response.reset();
+        if (renewedToken != null) {
+            response.setHeader(RENEWED_TOKEN_HEADER, renewedToken);
+        }
+        response.setStatus(status);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Result.error(status, message)));
+        return true;
+    }
+}
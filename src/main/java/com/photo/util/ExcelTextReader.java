@@ -0,0 +1,129 @@
+package com.photo.util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Excel 流式读取工具类
+ * 基于 XSSF 事件模型（SAX）逐行解析，不构建整个工作簿，内存占用与文件大小无关
+ */
+public class ExcelTextReader {
+
+    private ExcelTextReader() {
+    }
+
+    /**
+     * 读取第一个工作表第一列的文字，空白单元格跳过，每解析一行立即回调
+     *
+     * @return 回调的行数
+     */
+    public static int readFirstColumn(File file, Consumer<String> consumer) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+            FirstColumnHandler handler = new FirstColumnHandler(consumer);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, handler, false));
+                parser.parse(new InputSource(sheet));
+            }
+            return handler.count;
+        } finally {
+            // 只读打开的包用 revert 释放，close 会尝试保存
+            pkg.revert();
+        }
+    }
+
+    /**
+     * 统计第一列非空白的行数，超过 limit 后立即停止解析（此时返回 limit + 1）
+     */
+    public static int countFirstColumn(File file, int limit) throws Exception {
+        int[] count = new int[1];
+        try {
+            readFirstColumn(file, text -> {
+                if (++count[0] > limit) {
+                    throw new LimitReached();
+                }
+            });
+        } catch (Exception e) {
+            // 解析器可能把回调中的异常包装一层
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof LimitReached)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw e;
+            }
+        }
+        return count[0];
+    }
+
+    /**
+     * 计数达到上限，用于中止解析
+     */
+    private static final class LimitReached extends RuntimeException {
+        private LimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class FirstColumnHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Consumer<String> consumer;
+        private int currentCol;
+        private String firstCell;
+        private int count;
+
+        private FirstColumnHandler(Consumer<String> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            currentCol = -1;
+            firstCell = null;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (firstCell != null && !firstCell.trim().isEmpty()) {
+                consumer.accept(firstCell);
+                count++;
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // 部分生成工具不写单元格引用，此时按出现顺序推断列号
+            currentCol = cellReference != null ? new CellReference(cellReference).getCol() : currentCol + 1;
+            if (currentCol == 0) {
+                firstCell = formattedValue;
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.photo.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 图片文件响应工具类（生成图片、模板图片；打包存储时为段文件中的一段）
+ * - 文件名唯一（UUID / 批次ID / 内容哈希），生成后不会被改写，因此可长期缓存（immutable）
+ * - 强 ETag 由文件名和大小得出，不受去重命中时刷新修改时间的影响
+ * - 支持 If-None-Match（304）、单段 Range / If-Range（206 / 416），多段 Range 时返回完整文件
+ * - 容器支持时交给 Tomcat sendfile 零拷贝发送，否则通过 FileChannel.transferTo 写出
+ */
+public class ImageFileSender {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // Tomcat sendfile 相关请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // 与 Tomcat 默认 sendfileSize 一致，小文件直接写出更快
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private ImageFileSender() {
+    }
+
+    /**
+     * 文件名是否可以直接拼接到目录下（不含路径分隔符，不是临时文件）
+     */
+    public static boolean isSafeName(String fileName) {
+        return fileName != null && !fileName.isEmpty()
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0
+                && !fileName.startsWith(".") && !fileName.endsWith(".tmp");
+    }
+
+    /**
+     * 发送文件（调用方已确认文件存在）
+     */
+    public static void send(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        send(file, 0, file.length(), file.getName(), request, response);
+    }
+
+    /**
+     * 发送文件中从 offset 开始的 length 个字节，name 为图片文件名（用于 ETag 和内容类型）
+     */
+    public static void send(File file, long offset, long length, String name,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + Long.toHexString(length) + "-" + Integer.toHexString(name.hashCode()) + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (matchesAny(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length;
+        String range = request.getHeader("Range");
+        // If-Range 与当前 ETag 不一致时忽略 Range，返回完整文件
+        if (range != null && (request.getHeader("If-Range") == null || etag.equals(request.getHeader("If-Range")))) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == UNSATISFIABLE) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader("Content-Range", "bytes */" + length);
+                return;
+            }
+            if (parsed != null) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        String contentType = request.getServletContext().getMimeType(name);
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod()) || end == start) {
+            return;
+        }
+
+        if (end - start >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由容器在请求处理结束后零拷贝发送
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, offset + start);
+            request.setAttribute(SENDFILE_END, offset + end);
+            return;
+        }
+        transfer(file, offset + start, offset + end, response.getOutputStream());
+    }
+
+    /**
+     * 解析单段 Range：返回 [start, end)；无法解析或多段时返回 null（按完整文件处理），超出文件范围时返回 UNSATISFIABLE
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // 最后 N 个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new long[]{Math.max(0, length - suffix), length};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length : Math.min(Long.parseLong(last) + 1, length);
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            if (end <= start) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-None-Match 比较（弱比较，支持多个值和 *）
+     */
+    private static boolean matchesAny(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void transfer(File file, long start, long end, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long position = start;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+        out.flush();
+    }
+}
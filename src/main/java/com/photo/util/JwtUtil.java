@@ -0,0 +1,80 @@
+package com.photo.util;
+
+import com.photo.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * JWT工具类（HS256 签名）
+ * token 中携带 用户ID、用户名、角色、token 代次和过期时间，校验时只需验签，不查 Session 和数据库
+ */
+@Component
+public class JwtUtil {
+
+    private static final String CLAIM_USERNAME = "name";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_GENERATION = "gen";
+
+    private final byte[] secret;
+    private final long expirationMillis;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration:1200000}") long expirationMillis) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.expirationMillis = expirationMillis;
+    }
+
+    /**
+     * 签发 token
+     */
+    public String createToken(User user, long generation) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setSubject(user.getId())
+                .claim(CLAIM_USERNAME, user.getUsername())
+                .claim(CLAIM_ROLE, user.getRole())
+                .claim(CLAIM_GENERATION, generation)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expirationMillis))
+                .signWith(SignatureAlgorithm.HS256, secret)
+                .compact();
+    }
+
+    /**
+     * 验签并解析 token，签名不符、格式错误或已过期时返回 null
+     */
+    public Claims parseToken(String token) {
+        try {
+            return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从 token 中还原用户（只包含 ID、用户名、角色）
+     */
+    public User getUser(Claims claims) {
+        User user = new User();
+        user.setId(claims.getSubject());
+        user.setUsername(claims.get(CLAIM_USERNAME, String.class));
+        user.setRole(claims.get(CLAIM_ROLE, Integer.class));
+        return user;
+    }
+
+    public long getGeneration(Claims claims) {
+        Number generation = claims.get(CLAIM_GENERATION, Number.class);
+        return generation != null ? generation.longValue() : -1;
+    }
+
+    public long getExpirationMillis() {
+        return expirationMillis;
+    }
+}
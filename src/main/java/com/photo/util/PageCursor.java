@@ -0,0 +1,59 @@
+package com.photo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 游标分页（keyset）的游标编解码工具类
+ * 游标内容为上一页最后一条记录的排序键，对客户端不透明，原样传回即可
+ */
+public class PageCursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private PageCursor() {
+    }
+
+    /**
+     * 编码排序键
+     */
+    public static String encode(Object... keys) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码排序键，游标为空时返回 null，格式不对时抛出异常
+     */
+    public static String[] decode(String cursor, int keyCount) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] keys = decoded.split(SEPARATOR, -1);
+            if (keys.length == keyCount) {
+                return keys;
+            }
+        } catch (IllegalArgumentException e) {
+            // 按无效游标处理
+        }
+        throw new RuntimeException("无效的分页游标");
+    }
+
+    /**
+     * 限制每页条数
+     */
+    public static int clampSize(Integer size) {
+        if (size == null || size < 1) {
+            return 10;
+        }
+        return Math.min(size, 100);
+    }
+}
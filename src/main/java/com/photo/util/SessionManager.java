@@ -1,132 +1,193 @@
 package com.photo.util;
 
+import com.photo.entity.User;
+
 import javax.servlet.http.HttpSession;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Session 管理工具类
- * - 单端登录：新登录挤掉旧端并使旧 Session 失效
- * - 维护 userId<->sessionId、token<->sessionId 双向映射
- * - 提供 Session 有效性校验
+ * - 以 token 为键登记会话，每条登记包含 用户、sessionId、会话代次，校验只需一次查找
+ * - 单端登录：每个用户一个槽位，新登录通过一次 CAS 替换槽位，被替换的旧登记作废并使旧 Session 失效
+ * - 登记作废后从 token 表和用户槽位中移除，不留残余映射
  */
 public class SessionManager {
 
-    // userId -> Session
-    private static final Map<String, HttpSession> USER_SESSION_MAP = new ConcurrentHashMap<>();
-    // sessionId -> userId
-    private static final Map<String, String> SESSION_USER_MAP = new ConcurrentHashMap<>();
+    private static final String TOKEN_SESSION_KEY = "token";
+
+    // token -> 会话登记
+    private static final Map<String, Binding> TOKEN_BINDINGS = new ConcurrentHashMap<>();
+    // userId -> 当前会话登记（单端登录槽位）
+    private static final Map<String, Binding> USER_SLOTS = new ConcurrentHashMap<>();
+
+    // 会话代次，全局递增，不会重复使用
+    private static final AtomicLong GENERATION = new AtomicLong();
 
-    // token -> sessionId
-    private static final Map<String, String> TOKEN_SESSION_MAP = new ConcurrentHashMap<>();
-    // sessionId -> token
-    private static final Map<String, String> SESSION_TOKEN_MAP = new ConcurrentHashMap<>();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private SessionManager() {
+    }
 
     /**
-     * 绑定用户、token 与 session（单端登录）
+     * 会话登记（创建后除作废标记外不再修改）
      */
-    public static void bindSession(String userId, String token, HttpSession session) {
-        // 挤掉旧会话
-        HttpSession oldSession = USER_SESSION_MAP.get(userId);
-        if (oldSession != null && !oldSession.getId().equals(session.getId())) {
-            removeMappings(oldSession);
-            try {
-                oldSession.invalidate();
-            } catch (Exception ignored) {
-            }
+    public static final class Binding {
+        private final String token;
+        private final User user;
+        private final HttpSession session;
+        private final String sessionId;
+        private final long generation;
+        private volatile boolean revoked;
+
+        private Binding(String token, User user, HttpSession session, long generation) {
+            this.token = token;
+            this.user = user;
+            this.session = session;
+            this.sessionId = session.getId();
+            this.generation = generation;
         }
 
-        USER_SESSION_MAP.put(userId, session);
-        SESSION_USER_MAP.put(session.getId(), userId);
-        TOKEN_SESSION_MAP.put(token, session.getId());
-        SESSION_TOKEN_MAP.put(session.getId(), token);
+        public String getToken() {
+            return token;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public String getUserId() {
+            return user.getId();
+        }
+
+        public HttpSession getSession() {
+            return session;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public boolean isRevoked() {
+            return revoked;
+        }
     }
 
     /**
-     * 移除 session 相关的所有映射
+     * 绑定用户、token 与 session（单端登录）
      */
-    public static void removeMappings(HttpSession session) {
-        if (session == null) return;
-        String sessionId = session.getId();
-
-        String userId = SESSION_USER_MAP.remove(sessionId);
-        if (userId != null) {
-            HttpSession bound = USER_SESSION_MAP.get(userId);
-            if (bound == null || bound.getId().equals(sessionId)) {
-                USER_SESSION_MAP.remove(userId);
+    public static Binding bindSession(User user, String token, HttpSession session) {
+        Binding binding = new Binding(token, user, session, GENERATION.incrementAndGet());
+        TOKEN_BINDINGS.put(token, binding);
+
+        // 一次 CAS 占据用户槽位，失败说明有并发登录，重读后再试
+        Binding old;
+        while (true) {
+            old = USER_SLOTS.get(user.getId());
+            if (old == null ? USER_SLOTS.putIfAbsent(user.getId(), binding) == null
+                    : USER_SLOTS.replace(user.getId(), old, binding)) {
+                break;
             }
         }
 
-        String token = SESSION_TOKEN_MAP.remove(sessionId);
-        if (token != null) {
-            TOKEN_SESSION_MAP.remove(token);
+        // 挤掉旧会话
+        if (old != null) {
+            EVICTIONS.incrementAndGet();
+            revoke(old);
+            if (!old.sessionId.equals(binding.sessionId)) {
+                try {
+                    old.session.invalidate();
+                } catch (Exception ignored) {
+                }
+            }
         }
+        return binding;
     }
 
     /**
-     * 根据 token 获取 sessionId
+     * 校验 token：登记存在、未作废且属于当前 session 时返回登记，否则返回 null
      */
-    public static String getSessionIdByToken(String token) {
-        return TOKEN_SESSION_MAP.get(token);
+    public static Binding validate(String token, String sessionId) {
+        Binding binding = TOKEN_BINDINGS.get(token);
+        if (binding == null || binding.revoked || !binding.sessionId.equals(sessionId)) {
+            return null;
+        }
+        return binding;
     }
 
     /**
-     * 根据 sessionId 获取 Session
+     * 根据 token 获取会话登记
      */
-    public static HttpSession getSessionBySessionId(String sessionId) {
-        String userId = SESSION_USER_MAP.get(sessionId);
-        if (userId == null) {
-            return null;
-        }
-        return USER_SESSION_MAP.get(userId);
+    public static Binding getBinding(String token) {
+        return TOKEN_BINDINGS.get(token);
     }
 
     /**
-     * 根据 sessionId 获取 token
+     * 作废 token 对应的登记，返回被作废的登记
      */
-    public static String getTokenBySessionId(String sessionId) {
-        return SESSION_TOKEN_MAP.get(sessionId);
+    public static Binding removeToken(String token) {
+        if (token == null) {
+            return null;
+        }
+        Binding binding = TOKEN_BINDINGS.get(token);
+        if (binding != null) {
+            revoke(binding);
+        }
+        return binding;
     }
 
     /**
-     * 仅通过 sessionId 清理映射（用于找不到 HttpSession 实例的场景）
+     * 移除 session 相关的登记（需在移除 session 中的 token 属性之前调用）
      */
-    public static void removeMappings(String sessionId) {
-        if (sessionId == null) {
+    public static void removeMappings(HttpSession session) {
+        if (session == null) {
             return;
         }
-        String userId = SESSION_USER_MAP.remove(sessionId);
-        if (userId != null) {
-            HttpSession bound = USER_SESSION_MAP.get(userId);
-            if (bound == null || bound.getId().equals(sessionId)) {
-                USER_SESSION_MAP.remove(userId);
-            }
+        String token;
+        try {
+            token = (String) session.getAttribute(TOKEN_SESSION_KEY);
+        } catch (IllegalStateException e) {
+            // session 已失效
+            return;
         }
-        String token = SESSION_TOKEN_MAP.remove(sessionId);
-        if (token != null) {
-            TOKEN_SESSION_MAP.remove(token);
+        Binding binding = token != null ? TOKEN_BINDINGS.get(token) : null;
+        if (binding != null && binding.sessionId.equals(session.getId())) {
+            revoke(binding);
         }
     }
 
     /**
-     * 根据用户ID获取Session
+     * 根据用户ID获取当前 Session
      */
     public static HttpSession getSessionByUserId(String userId) {
-        return USER_SESSION_MAP.get(userId);
+        Binding binding = USER_SLOTS.get(userId);
+        return binding != null ? binding.session : null;
     }
 
     /**
-     * 校验 Session 是否仍是用户当前会话（未被挤下线且仍在映射表内）
+     * 登记统计信息
      */
-    public static boolean isSessionValid(HttpSession session) {
-        if (session == null) {
-            return false;
-        }
-        String userId = SESSION_USER_MAP.get(session.getId());
-        if (userId == null) {
-            return false;
-        }
-        HttpSession currentSession = USER_SESSION_MAP.get(userId);
-        return currentSession != null && currentSession.getId().equals(session.getId());
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tokens", TOKEN_BINDINGS.size());
+        stats.put("users", USER_SLOTS.size());
+        stats.put("generation", GENERATION.get());
+        stats.put("evictions", EVICTIONS.get());
+        return stats;
+    }
+
+    /**
+     * 作废登记：先打标记使校验立即失败，再按原值移除（不会误删同键的新登记）
+     */
+    private static void revoke(Binding binding) {
+        binding.revoked = true;
+        TOKEN_BINDINGS.remove(binding.token, binding);
+        USER_SLOTS.remove(binding.getUserId(), binding);
     }
 }
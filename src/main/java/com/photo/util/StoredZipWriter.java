@@ -0,0 +1,218 @@
+package com.photo.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 不压缩（STORED）的 ZIP 写出工具类
+ * - 图片本身已压缩，打包时只存储不压缩，文件内容（或段文件中的一段）通过 FileChannel 直接转写到输出流
+ * - 每个条目的 CRC 和大小在写出前已知，因此可以提前算出整个 ZIP 的字节数
+ * - 不支持 Zip64，超过 4GB 或 65535 个条目时由调用方改用 ZipOutputStream
+ */
+public class StoredZipWriter {
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_RECORD_SIZE = 22;
+
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    // 通用标志位：第 11 位表示文件名为 UTF-8
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int VERSION = 10;
+
+    private StoredZipWriter() {
+    }
+
+    /**
+     * ZIP 条目（文件内容在写出过程中不得变化）
+     */
+    public static final class Entry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final File file;
+        private final long offset;
+        private final long size;
+        private final long crc;
+        private final long dosTime;
+        private final boolean wholeFile;
+
+        public Entry(String name, File file, long size, long crc) {
+            this(name, file, 0, size, crc, file.lastModified(), true);
+        }
+
+        /**
+         * 文件中从 offset 开始的 size 个字节（打包存储的图片）
+         */
+        public Entry(String name, File file, long offset, long size, long crc, long lastModified) {
+            this(name, file, offset, size, crc, lastModified, false);
+        }
+
+        private Entry(String name, File file, long offset, long size, long crc, long lastModified, boolean wholeFile) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.file = file;
+            this.offset = offset;
+            this.size = size;
+            this.crc = crc;
+            this.dosTime = toDosTime(lastModified);
+            this.wholeFile = wholeFile;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+    }
+
+    /**
+     * 是否能以普通 ZIP（非 Zip64）格式写出
+     */
+    public static boolean fits(List<Entry> entries) {
+        return entries.size() <= MAX_ENTRIES && contentLength(entries) <= MAX_UINT32;
+    }
+
+    /**
+     * 计算写出后的 ZIP 总字节数
+     */
+    public static long contentLength(List<Entry> entries) {
+        long length = END_RECORD_SIZE;
+        for (Entry entry : entries) {
+            length += LOCAL_HEADER_SIZE + CENTRAL_HEADER_SIZE + 2L * entry.nameBytes.length + entry.size;
+        }
+        return length;
+    }
+
+    /**
+     * 写出 ZIP（不关闭输出流）
+     */
+    public static void write(List<Entry> entries, OutputStream out) throws IOException {
+        if (!fits(entries)) {
+            throw new IOException("导出内容过大，需要 Zip64 格式");
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long[] offsets = new long[entries.size()];
+        long offset = 0;
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            offsets[i] = offset;
+            byte[] header = new byte[LOCAL_HEADER_SIZE];
+            writeInt(header, 0, 0x04034b50);
+            writeShort(header, 4, VERSION);
+            writeShort(header, 6, FLAG_UTF8);
+            writeShort(header, 8, 0);                 // 压缩方式：STORED
+            writeInt(header, 10, (int) entry.dosTime);
+            writeInt(header, 14, (int) entry.crc);
+            writeInt(header, 18, (int) entry.size);   // 压缩后大小
+            writeInt(header, 22, (int) entry.size);   // 原始大小
+            writeShort(header, 26, entry.nameBytes.length);
+            writeShort(header, 28, 0);
+            out.write(header);
+            out.write(entry.nameBytes);
+            transfer(entry, target);
+            offset += LOCAL_HEADER_SIZE + entry.nameBytes.length + entry.size;
+        }
+
+        long centralOffset = offset;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            byte[] header = new byte[CENTRAL_HEADER_SIZE];
+            writeInt(header, 0, 0x02014b50);
+            writeShort(header, 4, VERSION);
+            writeShort(header, 6, VERSION);
+            writeShort(header, 8, FLAG_UTF8);
+            writeShort(header, 10, 0);
+            writeInt(header, 12, (int) entry.dosTime);
+            writeInt(header, 16, (int) entry.crc);
+            writeInt(header, 20, (int) entry.size);
+            writeInt(header, 24, (int) entry.size);
+            writeShort(header, 28, entry.nameBytes.length);
+            // 扩展字段、注释、磁盘号、内部/外部属性均为 0
+            writeInt(header, 42, (int) offsets[i]);
+            out.write(header);
+            out.write(entry.nameBytes);
+            offset += CENTRAL_HEADER_SIZE + entry.nameBytes.length;
+        }
+
+        byte[] end = new byte[END_RECORD_SIZE];
+        writeInt(end, 0, 0x06054b50);
+        writeShort(end, 8, entries.size());
+        writeShort(end, 10, entries.size());
+        writeInt(end, 12, (int) (offset - centralOffset));
+        writeInt(end, 16, (int) centralOffset);
+        out.write(end);
+        out.flush();
+    }
+
+    /**
+     * 写出单个条目的内容（不含 ZIP 头，供 ZipOutputStream 写 Zip64 时使用）
+     */
+    public static void copy(Entry entry, OutputStream out) throws IOException {
+        transfer(entry, Channels.newChannel(out));
+    }
+
+    /**
+     * 把文件内容转写到输出通道，写出字节数必须与登记的大小一致
+     */
+    private static void transfer(Entry entry, WritableByteChannel target) throws IOException {
+        try (FileInputStream in = new FileInputStream(entry.file)) {
+            FileChannel channel = in.getChannel();
+            long position = 0;
+            while (position < entry.size) {
+                long n = channel.transferTo(entry.offset + position, entry.size - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            if (position != entry.size || (entry.wholeFile && channel.size() != entry.size)) {
+                throw new IOException("文件在导出过程中被修改：" + entry.name);
+            }
+        }
+    }
+
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        long date = time.getDayOfMonth() | (time.getMonthValue() << 5) | ((time.getYear() - 1980) << 9);
+        long clock = (time.getSecond() >> 1) | (time.getMinute() << 5) | (time.getHour() << 11);
+        return (date << 16) | clock;
+    }
+
+    private static void writeShort(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+        buf[offset + 2] = (byte) (value >>> 16);
+        buf[offset + 3] = (byte) (value >>> 24);
+    }
+}
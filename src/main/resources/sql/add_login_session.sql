@@ -0,0 +1,20 @@
+-- 共享登录会话表（session-store.type=shared 时使用，多个应用节点共用）
+-- 每个用户一行：token 为当前有效 token（登出或过期后为 NULL），generation 在每次登录、登出时递增
+CREATE TABLE IF NOT EXISTS `login_session` (
+  `user_id` varchar(36) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '用户ID（UUID）',
+  `token` varchar(64) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '当前有效 token',
+  `generation` bigint NOT NULL DEFAULT '1' COMMENT '会话代次（单端登录 CAS 依据）',
+  `expire_time` datetime NOT NULL COMMENT '过期时间（滑动续期）',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`user_id`),
+  UNIQUE KEY `uk_token` (`token`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='共享登录会话表';
+
+-- token 作废记录：各节点轮询新增记录，清除本地近端缓存中的 token
+CREATE TABLE IF NOT EXISTS `login_revocation` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `token` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '作废的 token',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '作废时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_create_time` (`create_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='登录 token 作废记录';
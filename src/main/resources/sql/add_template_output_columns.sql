@@ -0,0 +1,3 @@
+-- 模板输出参数（为空时使用 application.yml 中 render.output 的全局配置）
+ALTER TABLE `photo_template` ADD COLUMN `output_format` varchar(10) DEFAULT NULL COMMENT '输出格式：png、jpeg' AFTER `font_color`;
+ALTER TABLE `photo_template` ADD COLUMN `output_quality` int DEFAULT NULL COMMENT '输出质量：JPEG为1-100的质量，PNG为0-9的压缩级别' AFTER `output_format`;
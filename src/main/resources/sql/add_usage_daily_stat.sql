@@ -0,0 +1,19 @@
+-- 使用量日汇总表（按 用户 + 模板 + 日期 汇总，随使用记录同一事务累加）
+CREATE TABLE IF NOT EXISTS `usage_daily_stat` (
+  `user_id` varchar(36) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '用户ID（UUID）',
+  `template_id` bigint NOT NULL DEFAULT '0' COMMENT '模板ID（无模板时为0）',
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `record_count` int NOT NULL DEFAULT '0' COMMENT '操作次数（使用记录条数）',
+  `image_count` bigint NOT NULL DEFAULT '0' COMMENT '生成数量（使用记录 count 之和）',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`user_id`, `stat_date`, `template_id`),
+  KEY `idx_stat_date_template` (`stat_date`, `template_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='使用量日汇总表';
+
+-- 根据历史使用记录回填（也可在管理后台调用 POST /api/admin/usage-stats/rebuild 重建）
+INSERT INTO `usage_daily_stat` (`user_id`, `template_id`, `stat_date`, `record_count`, `image_count`)
+SELECT `user_id`, IFNULL(`template_id`, 0), DATE(`create_time`), COUNT(*), SUM(`count`)
+FROM `usage_record`
+WHERE `deleted` = 0
+GROUP BY `user_id`, IFNULL(`template_id`, 0), DATE(`create_time`)
+ON DUPLICATE KEY UPDATE `record_count` = VALUES(`record_count`), `image_count` = VALUES(`image_count`);
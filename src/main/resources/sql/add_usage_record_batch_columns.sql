@@ -0,0 +1,4 @@
+-- 批量使用记录紧凑存储：列表只存摘要，完整文字和图片路径压缩后存入 payload（列表查询不读取）
+ALTER TABLE `usage_record` ADD COLUMN `batch_id` varchar(32) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '批次ID（批量生成时有值，图片文件名为 批次ID_序号）' AFTER `image_paths`;
+ALTER TABLE `usage_record` ADD COLUMN `payload` mediumblob COMMENT '批量明细（gzip 压缩的 JSON：文字列表、无法推导时的图片路径）' AFTER `batch_id`;
+ALTER TABLE `usage_record` ADD KEY `idx_batch_id` (`batch_id`);
@@ -0,0 +1,136 @@
+package com.photo;
+
+import com.photo.render.LineBreaker;
+import com.photo.render.RenderPlan;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 折行结果对比测试
+ * LineBreaker 与原来逐前缀 substring + stringWidth 的折行在以下输入上结果必须完全一致：
+ * - 中文、英文、中英混排、代理对（表情、扩展区汉字）、组合符号、多段落
+ * - 多种字体、字号、框宽，以及开启小数度量的字体（走逐前缀测量）
+ * - 框宽小于单个字符时每个字符强制单独成行
+ */
+public class LineBreakerTest {
+
+    private static final String[] TEXTS = {
+            "春眠不觉晓，处处闻啼鸟。夜来风雨声，花落知多少。",
+            "The quick brown fox jumps over the lazy dog, again and again.",
+            "2024年Q3季度营收同比增长12.5%，Spring Boot 2.7 升级完成。",
+            "生日快乐😀🎉祝你𠮷祥如意，𩸽鱼一条",
+            "été café naïve",
+            "第一段\n\nSecond paragraph with words\n第三段，混合 mixed 文字",
+            "WWWWMMMM一二三四",
+            "",
+    };
+
+    private static final int[] FONT_SIZES = {12, 24, 37, 60, 120};
+
+    private static final int[] WIDTHS = {1, 10, 40, 100, 250, 600, 2000};
+
+    public static void main(String[] args) {
+        List<FontMetrics> metrics = new ArrayList<>();
+        for (String family : Arrays.asList(Font.DIALOG, Font.SERIF, Font.MONOSPACED, "微软雅黑")) {
+            for (int size : FONT_SIZES) {
+                Font font = new Font(family, Font.PLAIN, size);
+                metrics.add(measure(font, false));
+                metrics.add(measure(font, true));
+            }
+        }
+
+        int cases = 0;
+        int failures = 0;
+        for (FontMetrics fm : metrics) {
+            for (String text : TEXTS) {
+                for (int width : WIDTHS) {
+                    cases++;
+                    List<String> expected = breakByPrefix(text, fm, width);
+                    List<String> actual = LineBreaker.breakLines(text, fm, width);
+                    if (!expected.equals(actual)) {
+                        failures++;
+                        System.out.println("不一致：" + describe(fm) + "，宽度 " + width + "，文字 " + text);
+                        System.out.println("  期望 " + expected);
+                        System.out.println("  实际 " + actual);
+                    }
+                }
+            }
+        }
+
+        // 框宽小于单个字符：每个字符单独成一行，不能丢字也不能死循环
+        for (FontMetrics fm : metrics) {
+            cases++;
+            String text = "W字W";
+            int width = Math.min(fm.charWidth('W'), fm.charWidth('字')) - 1;
+            List<String> actual = LineBreaker.breakLines(text, fm, width);
+            if (!Arrays.asList("W", "字", "W").equals(actual)) {
+                failures++;
+                System.out.println("强制换行错误：" + describe(fm) + "，宽度 " + width + "，结果 " + actual);
+            }
+        }
+
+        System.out.println("用例数: " + cases);
+        System.out.println("不一致: " + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 原实现：每加一个字符就对当前行整串调用 stringWidth
+     */
+    private static List<String> breakByPrefix(String text, FontMetrics fm, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n")) {
+            if (paragraph.isEmpty()) {
+                lines.add("");
+                continue;
+            }
+            int start = 0;
+            while (start < paragraph.length()) {
+                int end = start;
+                while (end < paragraph.length()) {
+                    String testLine = paragraph.substring(start, end + 1);
+                    if (fm.stringWidth(testLine) > maxWidth) {
+                        break;
+                    }
+                    end++;
+                }
+                if (end == start) {
+                    lines.add(paragraph.substring(start, start + 1));
+                    start++;
+                } else {
+                    lines.add(paragraph.substring(start, end));
+                    start = end;
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static FontMetrics measure(Font font, boolean fractionalMetrics) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scratch.createGraphics();
+        try {
+            RenderPlan.applyRenderingHints(g2d);
+            if (fractionalMetrics) {
+                g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            }
+            return g2d.getFontMetrics(font);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private static String describe(FontMetrics fm) {
+        return fm.getFont().getFontName() + " " + fm.getFont().getSize()
+                + (fm.getFontRenderContext().usesFractionalMetrics() ? "（小数度量）" : "");
+    }
+}
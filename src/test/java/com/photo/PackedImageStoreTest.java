@@ -0,0 +1,285 @@
+package com.photo;
+
+import com.photo.store.ImageRegion;
+import com.photo.store.PackedImageStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * 打包存储恢复测试
+ * 写入、删除、压缩后重新打开，检查重建的索引与预期完全一致：
+ * - 删除后重新写入同名图片，重启后是新内容
+ * - 末段尾部只写了记录头（内容未落盘）或只写了半个记录头时，重启后截掉且不进入索引
+ * - 压缩时删除记录搬到新段，旧段退役删除后，更早段中的同名图片不会复活
+ * - 压缩时已重新写入的图片，删除记录不再搬运（否则会遮盖新图片）
+ * - 新段不复用退役段的ID
+ */
+public class PackedImageStoreTest {
+
+    private static final int SEGMENT_BYTES = 1024 * 1024;
+    private static final int IMAGE_BYTES = 200 * 1000;
+
+    // 与 PackedImageStore 的记录格式一致
+    private static final int MAGIC = 0x50494d47;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        reopen();
+        tornTail();
+        compaction();
+
+        System.out.println("失败: " + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 覆盖写、删除后重新写入
+     */
+    private static void reopen() throws Exception {
+        File dir = Files.createTempDirectory("packed-reopen-").toFile();
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+
+        PackedImageStore store = open(dir);
+        put(store, expected, "a.png", 1, 1000);
+        put(store, expected, "b.png", 2, 1000);
+        put(store, expected, "c.png", 3, 1000);
+        delete(store, expected, "b.png");
+        put(store, expected, "c.png", 4, 2000);
+        put(store, expected, "d.png", 5, 1000);
+        delete(store, expected, "d.png");
+        put(store, expected, "d.png", 6, 3000);
+        check("写入后", store, expected, "b.png");
+        store.shutdown();
+
+        store = open(dir);
+        check("重新打开后", store, expected, "b.png");
+        store.shutdown();
+    }
+
+    /**
+     * 崩溃时末段尾部的记录不完整
+     */
+    private static void tornTail() throws Exception {
+        File dir = Files.createTempDirectory("packed-torn-").toFile();
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+
+        PackedImageStore store = open(dir);
+        put(store, expected, "a.png", 1, 5000);
+        put(store, expected, "b.png", 2, 5000);
+        store.shutdown();
+
+        File last = lastSegment(dir);
+        long intact = last.length();
+        byte[] data = image(3, 5000);
+        try (FileChannel channel = FileChannel.open(last.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // 记录头和文件名已落盘，内容页还是零
+            write(channel, record("torn.png", new byte[data.length], data.length, crc(data)));
+            // 之后半个记录头
+            write(channel, ByteBuffer.wrap(Arrays.copyOf(record("half.png", data, data.length, crc(data)).array(), 10)));
+        }
+
+        store = open(dir);
+        check("截掉尾部后", store, expected, "torn.png", "half.png");
+        if (last.length() != intact) {
+            fail("末段应截回 " + intact + " 字节，实际 " + last.length());
+        }
+        // 截掉后继续写入，重启后仍然可读
+        put(store, expected, "c.png", 4, 5000);
+        store.shutdown();
+
+        store = open(dir);
+        check("截掉尾部并继续写入后", store, expected, "torn.png", "half.png");
+        store.shutdown();
+    }
+
+    /**
+     * 段1：x、a1..a4（x 之后被删除，段1失效比例低，不压缩）
+     * 段2：b0、x 的删除记录、y1..y3 及其删除记录、重新写入的 y1（失效比例过半，被压缩）
+     * 段3 起：压缩搬来的记录和之后的写入
+     */
+    private static void compaction() throws Exception {
+        File dir = Files.createTempDirectory("packed-compact-").toFile();
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+
+        PackedImageStore store = open(dir);
+        int seed = 0;
+        put(store, expected, "x.png", ++seed, IMAGE_BYTES);
+        for (int i = 1; i <= 4; i++) {
+            put(store, expected, "a" + i + ".png", ++seed, IMAGE_BYTES);
+        }
+        put(store, expected, "b0.png", ++seed, IMAGE_BYTES);
+        expectSegments(dir, "段1写满后", 1, 2);
+
+        delete(store, expected, "x.png");
+        for (int i = 1; i <= 3; i++) {
+            put(store, expected, "y" + i + ".png", ++seed, IMAGE_BYTES);
+        }
+        for (int i = 1; i <= 3; i++) {
+            delete(store, expected, "y" + i + ".png");
+        }
+        put(store, expected, "y1.png", ++seed, IMAGE_BYTES);
+        put(store, expected, "c1.png", ++seed, IMAGE_BYTES);
+        expectSegments(dir, "段2写满后", 1, 2, 3);
+
+        invoke(store, "compact");
+        check("压缩后", store, expected, "x.png", "y2.png", "y3.png");
+
+        // 退役的段2仍在磁盘上，新段不能复用其ID
+        File retired = segmentFile(dir, 2);
+        long retiredLength = retired.length();
+        for (int i = 2; i <= 6; i++) {
+            put(store, expected, "c" + i + ".png", ++seed, IMAGE_BYTES);
+        }
+        if (retired.length() != retiredLength) {
+            fail("退役段 2 被改写");
+        }
+        expectSegments(dir, "压缩并继续写入后", 1, 2, 3, 4);
+
+        // 宽限期为 0，删除退役段文件后段1中的 x 只能靠搬到新段的删除记录遮盖
+        invoke(store, "deleteRetired", System.currentTimeMillis());
+        expectSegments(dir, "删除退役段后", 1, 3, 4);
+        store.shutdown();
+
+        store = open(dir);
+        check("压缩后重新打开", store, expected, "x.png", "y2.png", "y3.png");
+        store.shutdown();
+    }
+
+    private static PackedImageStore open(File dir) throws IOException {
+        PackedImageStore store = new PackedImageStore(dir.getPath(), SEGMENT_BYTES, 3600, 0.5, 0);
+        store.start();
+        return store;
+    }
+
+    private static void put(PackedImageStore store, Map<String, byte[]> expected, String name, int seed, int size)
+            throws IOException {
+        byte[] data = image(seed, size);
+        store.put(name, data, crc(data));
+        expected.put(name, data);
+    }
+
+    private static void delete(PackedImageStore store, Map<String, byte[]> expected, String name) throws IOException {
+        if (!store.delete(name)) {
+            fail("删除 " + name + " 返回 false");
+        }
+        expected.remove(name);
+    }
+
+    /**
+     * 索引中恰好是 expected 中的图片，内容和 CRC 一致，absent 中的图片不存在
+     */
+    private static void check(String stage, PackedImageStore store, Map<String, byte[]> expected, String... absent)
+            throws IOException {
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            ImageRegion region = store.find(entry.getKey());
+            if (region == null) {
+                fail(stage + "：缺少 " + entry.getKey());
+                continue;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            region.transferTo(out);
+            if (!Arrays.equals(entry.getValue(), out.toByteArray()) || region.getCrc() != crc(entry.getValue())) {
+                fail(stage + "：" + entry.getKey() + " 内容不一致");
+            }
+        }
+        for (String name : absent) {
+            if (store.find(name) != null) {
+                fail(stage + "：" + name + " 不应存在");
+            }
+        }
+        Object images = store.getStats().get("images");
+        if (((Number) images).intValue() != expected.size()) {
+            fail(stage + "：索引有 " + images + " 张图片，应为 " + expected.size());
+        }
+    }
+
+    private static void expectSegments(File dir, String stage, int... ids) {
+        String[] names = dir.list((d, name) -> name.startsWith("segment-"));
+        Arrays.sort(names);
+        String[] expected = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            expected[i] = segmentFile(dir, ids[i]).getName();
+        }
+        if (!Arrays.equals(expected, names)) {
+            fail(stage + "：段文件为 " + Arrays.toString(names) + "，应为 " + Arrays.toString(expected));
+        }
+    }
+
+    private static File segmentFile(File dir, int id) {
+        return new File(dir, String.format("segment-%08d.dat", id));
+    }
+
+    private static File lastSegment(File dir) {
+        String[] names = dir.list((d, name) -> name.startsWith("segment-"));
+        Arrays.sort(names);
+        return new File(dir, names[names.length - 1]);
+    }
+
+    private static ByteBuffer record(String fileName, byte[] data, int dataLength, long crc) {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(22 + name.length + data.length);
+        buffer.putInt(MAGIC);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putShort((short) name.length);
+        buffer.putInt(dataLength);
+        buffer.putInt((int) crc);
+        buffer.put(name);
+        buffer.put(data);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static Object invoke(PackedImageStore store, String method, Object... args) throws Exception {
+        for (Method candidate : PackedImageStore.class.getDeclaredMethods()) {
+            if (candidate.getName().equals(method) && candidate.getParameterCount() == args.length) {
+                candidate.setAccessible(true);
+                try {
+                    return candidate.invoke(store, args);
+                } catch (InvocationTargetException e) {
+                    throw (Exception) e.getCause();
+                }
+            }
+        }
+        throw new NoSuchMethodException(method);
+    }
+
+    private static byte[] image(int seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+        return checksum.getValue();
+    }
+
+    private static void fail(String message) {
+        failures++;
+        System.out.println(message);
+    }
+}
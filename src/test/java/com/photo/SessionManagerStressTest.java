@@ -0,0 +1,133 @@
+package com.photo;
+
+import com.photo.entity.User;
+import com.photo.util.SessionManager;
+import org.springframework.mock.web.MockHttpSession;
+
+import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SessionManager 并发压力测试
+ * 多线程对少量用户反复登录、登出、会话过期，结束后检查：
+ * - 每个用户至多一个有效 token，且就是用户槽位中的会话
+ * - token 表和用户槽位中没有残留的作废登记
+ */
+public class SessionManagerStressTest {
+
+    private static final int USERS = 8;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setId("user-" + i);
+            user.setUsername("user" + i);
+            users.add(user);
+        }
+
+        List<String[]> issued = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong violations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < ROUNDS; i++) {
+                        User user = users.get(random.nextInt(USERS));
+                        String token = UUID.randomUUID().toString().replace("-", "");
+                        MockHttpSession session = new MockHttpSession(null, UUID.randomUUID().toString());
+                        session.setAttribute("token", token);
+                        SessionManager.bindSession(user, token, session);
+                        issued.add(new String[]{user.getId(), token, session.getId()});
+
+                        SessionManager.validate(token, session.getId());
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                // 主动登出：作废后必须立即校验失败
+                                SessionManager.removeToken(token);
+                                if (SessionManager.validate(token, session.getId()) != null) {
+                                    violations.incrementAndGet();
+                                }
+                                break;
+                            case 1:
+                                // Session 过期（监听器清理）
+                                SessionManager.removeMappings(session);
+                                if (SessionManager.validate(token, session.getId()) != null) {
+                                    violations.incrementAndGet();
+                                }
+                                break;
+                            default:
+                                // 保持登录，等待被后续登录挤掉
+                                break;
+                        }
+                        // 其他 session 不能使用该 token
+                        if (SessionManager.validate(token, "other") != null) {
+                            violations.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "session-stress-" + t).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long millis = (System.nanoTime() - begin) / 1_000_000;
+
+        // 统计每个用户仍有效的 token
+        Map<String, List<String[]>> valid = new HashMap<>();
+        for (String[] item : issued) {
+            if (SessionManager.validate(item[1], item[2]) != null) {
+                valid.computeIfAbsent(item[0], k -> new ArrayList<>()).add(item);
+            }
+        }
+        int validCount = 0;
+        for (User user : users) {
+            List<String[]> items = valid.getOrDefault(user.getId(), Collections.emptyList());
+            validCount += items.size();
+            HttpSession current = SessionManager.getSessionByUserId(user.getId());
+            if (items.size() > 1) {
+                System.out.println("用户 " + user.getId() + " 有 " + items.size() + " 个有效 token");
+                violations.incrementAndGet();
+            } else if (items.size() == 1 && (current == null || !current.getId().equals(items.get(0)[2]))) {
+                System.out.println("用户 " + user.getId() + " 的槽位与有效 token 不一致");
+                violations.incrementAndGet();
+            } else if (items.isEmpty() && current != null) {
+                System.out.println("用户 " + user.getId() + " 的槽位残留已作废会话");
+                violations.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> stats = SessionManager.getStats();
+        if (((Number) stats.get("tokens")).intValue() != validCount
+                || ((Number) stats.get("users")).intValue() != validCount) {
+            System.out.println("登记表残留：有效 token " + validCount + "，" + stats);
+            violations.incrementAndGet();
+        }
+
+        System.out.println("登录次数: " + issued.size() + "，耗时: " + millis + " ms");
+        System.out.println("登记统计: " + stats);
+        System.out.println("违规次数: " + violations.get());
+        if (violations.get() > 0) {
+            System.exit(1);
+        }
+    }
+}